@@ -0,0 +1,49 @@
+#!/usr/bin/env bash
+# Load-tests the read endpoints of a running instance with hey (https://github.com/rakyll/hey) and prints
+# requests/sec and p99 per endpoint. Run it once against the default (platform-thread) mode and once against
+# SPRING_PROFILES_ACTIVE=virtual, same database and data set, and compare. See ../benchmark-virtual-threads.md.
+#
+#   BASE_URL=http://localhost:8080 BENCH_USER=admin BENCH_PASSWORD=admin1234 TODO_ID=1 ./read-endpoints.sh
+set -euo pipefail
+
+BASE_URL=${BASE_URL:-http://localhost:8080}
+BENCH_USER=${BENCH_USER:-admin}
+BENCH_PASSWORD=${BENCH_PASSWORD:-admin1234}
+TODO_ID=${TODO_ID:-1}
+CONCURRENCY=${CONCURRENCY:-"50 200 1000"}
+DURATION=${DURATION:-60s}
+WARMUP=${WARMUP:-20s}
+
+command -v hey >/dev/null || { echo "hey is required (go install github.com/rakyll/hey@latest)" >&2; exit 1; }
+
+# an access token lives 15 minutes (app.jwt-expiration-milliseconds) and a full run takes longer, so every
+# warm-up and every measured step logs in again
+login() {
+  curl -sf -H 'Content-Type: application/json' \
+    -d "{\"usernameOrEmail\":\"${BENCH_USER}\",\"password\":\"${BENCH_PASSWORD}\"}" \
+    "${BASE_URL}/api/auth/login" | python3 -c 'import json,sys; print(json.load(sys.stdin)["accessToken"])'
+}
+
+endpoints=(
+  "/api/todos?limit=50"
+  "/api/todos/${TODO_ID}"
+  "/api/todos/${TODO_ID}/items"
+  "/api/todos/${TODO_ID}/messages?limit=50"
+  "/api/todos/stats"
+  "/api/todos/leaderboard/collab"
+)
+
+printf '%-40s %6s %12s %10s %8s\n' endpoint conc 'req/s' 'p99(ms)' non2xx
+for path in "${endpoints[@]}"; do
+  token=$(login)
+  # warm the JIT and the caches so the measured run starts from a steady state
+  hey -z "$WARMUP" -c 50 -H "Authorization: Bearer ${token}" "${BASE_URL}${path}" >/dev/null
+  for c in $CONCURRENCY; do
+    token=$(login)
+    out=$(hey -z "$DURATION" -c "$c" -H "Authorization: Bearer ${token}" "${BASE_URL}${path}")
+    rps=$(awk '/Requests\/sec/ {print $2}' <<<"$out")
+    p99=$(awk '/ 99% in / {printf "%.1f", $3 * 1000}' <<<"$out")
+    non2xx=$(awk '/\[[0-9]+\]/ && $1 !~ /\[2[0-9][0-9]\]/ {n += $2} END {print n + 0}' <<<"$out")
+    printf '%-40s %6s %12s %10s %8s\n' "$path" "$c" "$rps" "$p99" "$non2xx"
+  done
+done
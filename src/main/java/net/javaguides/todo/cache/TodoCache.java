@@ -0,0 +1,149 @@
+package net.javaguides.todo.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import net.javaguides.todo.dto.TodoDto;
+import net.javaguides.todo.dto.TodoItemDto;
+import net.javaguides.todo.exception.ResourceNotFoundException;
+import net.javaguides.todo.repository.TodoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+// Read-through cache for the per-todo views clients hit most (todo, its items, participation counts).
+// Every write path evicts the todo id; reviewed todos rarely change, so their TodoDto gets the longer
+// reviewed-ttl, which still bounds staleness from bulk UPDATEs that do not evict (see OverdueSweeper).
+// Hit/miss counters are published as cache.gets{cache=todo.*} on /actuator/metrics.
+// Misses load on the caller's thread but outside Caffeine's compute, which holds a map lock and would pin a
+// virtual thread for the whole query; an eviction during the load drops the pending entry, so the result
+// is handed to the waiting callers but not cached.
+@Component
+public class TodoCache {
+
+    private final TodoRepository todoRepository;
+    private final AsyncCache<Long, TodoDto> todos;
+    private final AsyncCache<Long, List<TodoItemDto>> items;
+    private final AsyncCache<Long, List<Object[]>> participants;
+
+    public TodoCache(TodoRepository todoRepository,
+                     @Value("${app.todo-cache.max-size:10000}") long maxSize,
+                     @Value("${app.todo-cache.ttl-seconds:300}") long ttlSeconds,
+                     @Value("${app.todo-cache.reviewed-ttl-seconds:3600}") long reviewedTtlSeconds,
+                     MeterRegistry meterRegistry) {
+        this.todoRepository = todoRepository;
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        Duration reviewedTtl = Duration.ofSeconds(reviewedTtlSeconds);
+
+        this.todos = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<Long, TodoDto>() {
+                    @Override
+                    public long expireAfterCreate(Long id, TodoDto dto, long currentTime) {
+                        return dto.isReviewed() ? reviewedTtl.toNanos() : ttl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long id, TodoDto dto, long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, dto, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long id, TodoDto dto, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+        this.items = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        this.participants = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, todos, "todo.dto");
+        CaffeineCacheMetrics.monitor(meterRegistry, items, "todo.items");
+        CaffeineCacheMetrics.monitor(meterRegistry, participants, "todo.participants");
+    }
+
+    public TodoDto getTodo(Long todoId) {
+        return load(todos, todoId, id -> todoRepository.findDtoById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id: " + id)));
+    }
+
+    public List<TodoItemDto> getItems(Long todoId, Function<Long, List<TodoItemDto>> loader) {
+        return load(items, todoId, id -> List.copyOf(loader.apply(id)));
+    }
+
+    // rows of (username, completedItemCount)
+    public List<Object[]> getParticipants(Long todoId, Function<Long, List<Object[]>> loader) {
+        return load(participants, todoId, id -> List.copyOf(loader.apply(id)));
+    }
+
+    // Evicts now and, inside a transaction, once more after commit so a reader
+    // that raced the write cannot leave the pre-commit state cached.
+    public void evict(Long todoId) {
+        invalidate(todoId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(todoId);
+                }
+            });
+        }
+    }
+
+    // after set-based UPDATEs that may have touched any todo
+    public void evictAllTodos() {
+        todos.synchronous().invalidateAll();
+    }
+
+    private void invalidate(Long todoId) {
+        todos.synchronous().invalidate(todoId);
+        items.synchronous().invalidate(todoId);
+        participants.synchronous().invalidate(todoId);
+    }
+
+    // the first caller for a key installs an empty future and runs the loader itself; the others wait on it
+    private static <V> V load(AsyncCache<Long, V> cache, Long key, Function<Long, V> loader) {
+        while (true) {
+            CompletableFuture<V> mine = new CompletableFuture<>();
+            CompletableFuture<V> future = cache.get(key, (k, executor) -> mine);
+            if (future == mine) {
+                try {
+                    V value = loader.apply(key);
+                    mine.complete(value);
+                    return value;
+                } catch (RuntimeException e) {
+                    // cancelled rather than failed: Caffeine logs a failed load as a warning, and a missing todo
+                    // is an ordinary 404; waiters see the cancellation and run the loader themselves
+                    mine.cancel(false);
+                    throw e;
+                }
+            }
+            try {
+                return future.join();
+            } catch (CancellationException e) {
+                // the loading caller failed; load again
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+    }
+}
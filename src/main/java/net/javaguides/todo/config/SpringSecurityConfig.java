@@ -1,5 +1,6 @@
 package net.javaguides.todo.config;
 
+import jakarta.servlet.DispatcherType;
 import lombok.AllArgsConstructor;
 import net.javaguides.todo.entity.Role;
 import net.javaguides.todo.entity.User;
@@ -52,7 +53,11 @@ public class SpringSecurityConfig {
 //                    authorize.requestMatchers(HttpMethod.PATCH, "/api/**").hasAnyRole("ADMIN", "USER");
 //                    authorize.requestMatchers(HttpMethod.GET, "/api/**").permitAll();
                     authorize.requestMatchers("/api/auth/**").permitAll();
+                    // the STOMP handshake is authenticated on CONNECT (StompAuthenticationInterceptor)
+                    authorize.requestMatchers("/ws/**").permitAll();
                     authorize.requestMatchers(HttpMethod.OPTIONS, "/**").permitAll();
+                    // streamed responses finish on an async dispatch; access was already checked on the original request
+                    authorize.dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll();
                     authorize.anyRequest().authenticated();
                 }).httpBasic(Customizer.withDefaults());
         http.exceptionHandling(exception -> exception
@@ -0,0 +1,54 @@
+package net.javaguides.todo.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.task.SimpleAsyncTaskExecutorBuilder;
+import org.springframework.boot.task.SimpleAsyncTaskSchedulerBuilder;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+// The STOMP broker registers its own channel executors and heart-beat scheduler, so Boot backs off from
+// creating the application executor (@Async, async MVC) and the @Scheduled scheduler, and that work would
+// land on the broker's pools. These are the same beans Boot would create, under the names Spring looks up,
+// and like Boot's they switch to virtual threads with spring.threads.virtual.enabled.
+@Configuration
+public class TaskExecutionConfig {
+
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskExecutor virtualApplicationTaskExecutor(SimpleAsyncTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean(name = "taskScheduler")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    // one virtual thread per run
+    @Bean(name = "taskScheduler")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskScheduler virtualTaskScheduler(SimpleAsyncTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+}
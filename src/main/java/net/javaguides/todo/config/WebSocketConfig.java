@@ -0,0 +1,54 @@
+package net.javaguides.todo.config;
+
+import net.javaguides.todo.security.StompAuthenticationInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+// STOMP over WebSocket at /ws with Spring's in-memory broker.
+// Clients CONNECT with "Authorization: Bearer <jwt>" (or an access_token header), SEND to
+// /app/todos/{todoId}/messages and SUBSCRIBE to /topic/todos/{todoId}/messages; errors come back on /user/queue/errors.
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    private final StompAuthenticationInterceptor stompAuthenticationInterceptor;
+
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    public WebSocketConfig(StompAuthenticationInterceptor stompAuthenticationInterceptor) {
+        this.stompAuthenticationInterceptor = stompAuthenticationInterceptor;
+    }
+
+    @Autowired
+    public void setMessageBrokerTaskScheduler(@Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler taskScheduler) {
+        this.messageBrokerTaskScheduler = taskScheduler;
+    }
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws").setAllowedOriginPatterns("*");
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.setApplicationDestinationPrefixes("/app");
+        registry.setUserDestinationPrefix("/user");
+        // heart-beats let both sides notice dead connections behind proxies
+        registry.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[]{10000, 10000})
+                .setTaskScheduler(messageBrokerTaskScheduler);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthenticationInterceptor);
+    }
+}
@@ -1,14 +1,21 @@
 package net.javaguides.todo.controller;
 
 import lombok.AllArgsConstructor;
+import net.javaguides.todo.dto.BatchRegisterResponse;
 import net.javaguides.todo.dto.JwtAuthResponse;
 import net.javaguides.todo.dto.LoginDto;
 import net.javaguides.todo.dto.RegisterDto;
 import net.javaguides.todo.service.AuthService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 @CrossOrigin("*")//any client can access this api
 @AllArgsConstructor
 @RestController
@@ -24,10 +31,52 @@ public class AuthController {
         return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
 
+    //Bulk registration for admins, as a JSON array of RegisterDto or as CSV
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/register/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchRegisterResponse> registerBatch(@RequestBody List<RegisterDto> registerDtos){
+        return new ResponseEntity<>(authService.registerBatch(registerDtos), HttpStatus.CREATED);
+    }
+
+    //CSV columns: firstName,lastName,username,email,password; an optional header line; no quoted fields
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/register/batch", consumes = "text/csv")
+    public ResponseEntity<BatchRegisterResponse> registerBatchCsv(@RequestBody String csv){
+        List<RegisterDto> registerDtos = new ArrayList<>();
+        for (String line : csv.split("\\R")) {
+            if (line.isBlank() || (registerDtos.isEmpty() && line.trim().toLowerCase().startsWith("firstname,"))) {
+                continue;
+            }
+            String[] cols = line.split(",", -1);
+            // a short row becomes a row with missing fields, reported like any other invalid row
+            registerDtos.add(new RegisterDto(column(cols, 0), column(cols, 1), column(cols, 2), column(cols, 3), column(cols, 4)));
+        }
+        return new ResponseEntity<>(authService.registerBatch(registerDtos), HttpStatus.CREATED);
+    }
+
+    private static String column(String[] cols, int index) {
+        return index < cols.length && !cols[index].isBlank() ? cols[index].trim() : null;
+    }
+
     //Build Login REST API
     @PostMapping("/login")
     public ResponseEntity<JwtAuthResponse> login(@RequestBody LoginDto loginDto){
         JwtAuthResponse jwtAuthResponse=authService.login(loginDto);
         return new ResponseEntity<>(jwtAuthResponse,HttpStatus.OK);
     }
+
+    //Exchange a refresh token for a new access token and the next refresh token (the presented one is used up)
+    @PostMapping("/refresh")
+    public ResponseEntity<JwtAuthResponse> refresh(@RequestBody Map<String, String> body){
+        return ResponseEntity.ok(authService.refresh(body.get("refreshToken")));
+    }
+
+    //Revoke the refresh token (with its rotations) and the bearer access token, if sent
+    @PostMapping("/logout")
+    public ResponseEntity<String> logout(@RequestBody(required = false) Map<String, String> body,
+                                         @RequestHeader(value = "Authorization", required = false) String authorization){
+        String accessToken = (authorization != null && authorization.startsWith("Bearer ")) ? authorization.substring(7) : null;
+        authService.logout(body != null ? body.get("refreshToken") : null, accessToken);
+        return ResponseEntity.ok("Logged out successfully!");
+    }
 }
@@ -0,0 +1,48 @@
+package net.javaguides.todo.controller;
+
+import lombok.AllArgsConstructor;
+import net.javaguides.todo.exception.ResourceNotFoundException;
+import net.javaguides.todo.exception.TodoAPIException;
+import net.javaguides.todo.service.MessageService;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+
+import java.util.Map;
+
+// STOMP counterpart of MessageController#add. Nothing is returned to the sender here:
+// the saved message reaches every subscriber of the todo, the sender included, through ChatRelay.
+@Controller
+@AllArgsConstructor
+public class ChatController {
+
+    private MessageService messageService;
+
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @MessageMapping("/todos/{todoId}/messages")
+    public void send(@DestinationVariable Long todoId, @Payload Map<String, String> body) {
+        messageService.addMessage(todoId, body.get("content"));
+    }
+
+    @MessageExceptionHandler
+    @SendToUser(destinations = "/queue/errors", broadcast = false)
+    public Map<String, Object> handleException(Exception exception) {
+        HttpStatus status = HttpStatus.INTERNAL_SERVER_ERROR;
+        if (exception instanceof TodoAPIException e) {
+            status = e.getStatus();
+        } else if (exception instanceof ResourceNotFoundException) {
+            status = HttpStatus.NOT_FOUND;
+        } else if (exception instanceof AccessDeniedException) {
+            status = HttpStatus.FORBIDDEN;
+        } else if (exception instanceof IllegalStateException) {
+            status = HttpStatus.BAD_REQUEST;
+        }
+        return Map.of("status", status.value(), "message", String.valueOf(exception.getMessage()));
+    }
+}
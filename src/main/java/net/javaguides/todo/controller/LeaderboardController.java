@@ -5,15 +5,24 @@ import net.javaguides.todo.dto.CollabRowDto;
 import net.javaguides.todo.dto.FinisherRowWithIdDto;
 import net.javaguides.todo.dto.FinisherTodoDetailDto;
 import lombok.AllArgsConstructor;
+import net.javaguides.todo.leaderboard.LeaderboardEngine;
+import net.javaguides.todo.exception.TodoAPIException;
+import net.javaguides.todo.repository.DailyScoreRepository;
 import net.javaguides.todo.repository.TodoItemRepository;
 import net.javaguides.todo.repository.TodoRepository;
+import net.javaguides.todo.security.CurrentUserResolver;
+import org.springframework.data.domain.Limit;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @CrossOrigin("*")
@@ -22,26 +31,46 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 public class LeaderboardController {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final TodoItemRepository todoItemRepository;
     private final TodoRepository todoRepository;
+    private final DailyScoreRepository dailyScoreRepository;
+    private final LeaderboardEngine leaderboardEngine;
+    private final CurrentUserResolver currentUserResolver;
+
+    // all-time boards are served from LeaderboardEngine; with from/to (inclusive ISO dates, either may be
+    // omitted) they are summed from the leaderboard_daily buckets. limit trims to the top N (default: everyone)
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
     @GetMapping("/collab")
-    public ResponseEntity<List<CollabRowDto>> getCollabBoard() {
-        List<Object[]> rows = todoItemRepository.collabLeaderboard();
+    public ResponseEntity<List<CollabRowDto>> getCollabBoard(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (from == null && to == null) {
+            return ResponseEntity.ok(leaderboardEngine.topCollaborators(topN(limit)));
+        }
+        List<Object[]> rows = dailyScoreRepository.collabBoard(start(from), end(from, to), limitOf(limit));
         List<CollabRowDto> dtoList = rows.stream()
-                .map(r -> new CollabRowDto(
-                        (Long) r[0],          // userId
-                        (String) r[1],        // userName
-                        (Long) r[2]           // collabCount（完成數）
-                ))
+                .map(r -> new CollabRowDto((Long) r[0], (String) r[1], ((Number) r[2]).longValue()))
                 .collect(Collectors.toList());
         return ResponseEntity.ok(dtoList);
     }
 
+    // detail lists are keyset-paged (default 50 rows) with ?beforeAt=&beforeId= from the last row of the previous page
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
     @GetMapping("/collab/{userId}/items")
-    public ResponseEntity<List<CollabItemDetailDto>> getCollabDetails(@PathVariable Long userId) {
-        List<Object[]> rows = todoItemRepository.collabDetailsForUser(userId);
+    public ResponseEntity<List<CollabItemDetailDto>> getCollabDetails(
+            @PathVariable Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeAt,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Integer limit) {
+        Cursor c = cursor(from, to, beforeAt, beforeId);
+        List<Object[]> rows = todoItemRepository.collabDetailsPage(userId,
+                start(from).atStartOfDay(), c.at(), c.id(), pageOf(limit));
         List<CollabItemDetailDto> dtoList = rows.stream()
                 .map(r -> new CollabItemDetailDto(
                         (Long) r[0],          // todoId
@@ -56,23 +85,46 @@ public class LeaderboardController {
 
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
     @GetMapping("/finish-by-id")
-    public ResponseEntity<List<FinisherRowWithIdDto>> getFinisherBoardById() {
-        List<Object[]> rows = todoRepository.finisherLeaderboardByUserId();
+    public ResponseEntity<List<FinisherRowWithIdDto>> getFinisherBoardById(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (from == null && to == null) {
+            return ResponseEntity.ok(leaderboardEngine.topFinishers(topN(limit)));
+        }
+        List<Object[]> rows = dailyScoreRepository.finisherBoard(start(from), end(from, to), limitOf(limit));
         List<FinisherRowWithIdDto> out = rows.stream()
-                .map(r -> new FinisherRowWithIdDto(
-                        (Long) r[0],                // userId
-                        (String) r[1],              // userName
-                        ((Number) r[2]).longValue() // finishCount（完成任務數）
-                ))
-                .sorted(Comparator.comparingLong(FinisherRowWithIdDto::getFinishCount).reversed())
+                .map(r -> new FinisherRowWithIdDto((Long) r[0], (String) r[1], ((Number) r[2]).longValue()))
                 .collect(Collectors.toList());
         return ResponseEntity.ok(out);
     }
 
+    // caller's own scores and ranks; rank is null when the score is 0
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @GetMapping("/me")
+    public ResponseEntity<Map<String, Object>> getMyRanks() {
+        Long userId = currentUserResolver.requireCurrentUser().getId();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("userId", userId);
+        m.put("finishCount", leaderboardEngine.finisherScore(userId));
+        m.put("finishRank", leaderboardEngine.finisherRank(userId));
+        m.put("collabCount", leaderboardEngine.collabScore(userId));
+        m.put("collabRank", leaderboardEngine.collabRank(userId));
+        return ResponseEntity.ok(m);
+    }
+
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
     @GetMapping("/finish/{userId}/todos-by-id")
-    public ResponseEntity<List<FinisherTodoDetailDto>> getFinisherDetailsByUserId(@PathVariable Long userId) {
-        List<Object[]> rows = todoRepository.finisherDetailsByUserId(userId);
+    public ResponseEntity<List<FinisherTodoDetailDto>> getFinisherDetailsByUserId(
+            @PathVariable Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeAt,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Integer limit) {
+        Cursor c = cursor(from, to, beforeAt, beforeId);
+        List<Object[]> rows = todoRepository.finisherDetailsPage(userId,
+                start(from).atStartOfDay(), c.at(), c.id(), pageOf(limit));
         List<FinisherTodoDetailDto> out = rows.stream()
                 .map(r -> new FinisherTodoDetailDto(
                         (Long) r[0],              // todoId
@@ -82,4 +134,44 @@ public class LeaderboardController {
                 .collect(Collectors.toList());
         return ResponseEntity.ok(out);
     }
+
+    private static int topN(Integer limit) {
+        return (limit == null || limit <= 0) ? Integer.MAX_VALUE : limit;
+    }
+
+    private static Limit limitOf(Integer limit) {
+        return (limit == null || limit <= 0) ? Limit.unlimited() : Limit.of(limit);
+    }
+
+    private static Limit pageOf(Integer limit) {
+        return Limit.of((limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    // detail pages run newest first; the next page starts before the (completedAt, id) of the last row,
+    // and the first page before the end of the date window
+    private static Cursor cursor(LocalDate from, LocalDate to, LocalDateTime beforeAt, Long beforeId) {
+        if ((beforeAt == null) != (beforeId == null)) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "'beforeAt' and 'beforeId' must be given together.");
+        }
+        LocalDateTime windowEnd = end(from, to).plusDays(1).atStartOfDay();
+        if (beforeAt == null || beforeAt.isAfter(windowEnd)) {
+            return new Cursor(windowEnd, 0L);
+        }
+        return new Cursor(beforeAt, beforeId);
+    }
+
+    private record Cursor(LocalDateTime at, Long id) {
+    }
+
+    private static LocalDate start(LocalDate from) {
+        return from != null ? from : LocalDate.EPOCH;
+    }
+
+    private static LocalDate end(LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        if (from != null && from.isAfter(end)) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "'from' must not be after 'to'.");
+        }
+        return end;
+    }
 }
\ No newline at end of file
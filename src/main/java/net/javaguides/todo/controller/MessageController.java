@@ -2,6 +2,7 @@ package net.javaguides.todo.controller;
 
 import lombok.AllArgsConstructor;
 import net.javaguides.todo.dto.MessageDto;
+import net.javaguides.todo.exception.TodoAPIException;
 import net.javaguides.todo.service.MessageService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -19,9 +20,23 @@ public class MessageController {
 
     private MessageService messageService;
 
+    // no params: the whole thread. ?afterId= polls for newer messages only;
+    // ?beforeId= (or just ?limit=, for the latest) pages back through history. Pages come oldest first.
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
     @GetMapping
-    public ResponseEntity<List<MessageDto>> list(@PathVariable Long todoId) {
+    public ResponseEntity<List<MessageDto>> list(@PathVariable Long todoId,
+                                                 @RequestParam(required = false) Long afterId,
+                                                 @RequestParam(required = false) Long beforeId,
+                                                 @RequestParam(required = false) Integer limit) {
+        if (afterId != null && beforeId != null) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Use either afterId or beforeId, not both.");
+        }
+        if (afterId != null) {
+            return ResponseEntity.ok(messageService.listMessagesAfter(todoId, afterId, limit));
+        }
+        if (beforeId != null || limit != null) {
+            return ResponseEntity.ok(messageService.listMessagesBefore(todoId, beforeId, limit));
+        }
         return ResponseEntity.ok(messageService.listMessagesByTodo(todoId));
     }
 
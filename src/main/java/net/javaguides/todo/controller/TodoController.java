@@ -1,14 +1,21 @@
 package net.javaguides.todo.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import net.javaguides.todo.dto.ParticipationDetailResponse;
 import net.javaguides.todo.dto.TodoDto;
 import net.javaguides.todo.service.TodoService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
 
@@ -18,7 +25,11 @@ import java.util.Map;
 @AllArgsConstructor
 public class TodoController {
 
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int STREAM_FLUSH_EVERY = 100;
+
     private TodoService todoService;
+    private ObjectMapper objectMapper;
 
     //Build Add Todo REST API
     @PreAuthorize("hasRole('ADMIN')")
@@ -30,6 +41,14 @@ public class TodoController {
         return new ResponseEntity<>(savedTodo, HttpStatus.CREATED);
     }
 
+    //Build Batch Add Todos REST API
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/batch")
+    public ResponseEntity<List<TodoDto>> addTodos(@RequestBody List<TodoDto> todoDtos) {
+        List<TodoDto> savedTodos = todoService.addTodos(todoDtos);
+        return new ResponseEntity<>(savedTodos, HttpStatus.CREATED);
+    }
+
     //Build get todo rest API
     //create a method and convert that method into rest API using spring annotation
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
@@ -40,12 +59,54 @@ public class TodoController {
     }
 
     //Build Get All Todos REST API
+    //without paging params it keeps returning the whole list; ?after=<lastId>&limit= switches to keyset paging
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
     @GetMapping
-    public ResponseEntity<List<TodoDto>> getAllTodos() {
-        List<TodoDto> todos = todoService.getAllTodos();
-        //return new ResponseEntity<>(todos, HttpStatus.OK);
-        return ResponseEntity.ok(todos);
+    public ResponseEntity<List<TodoDto>> getAllTodos(@RequestParam(required = false) Long after,
+                                                     @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            List<TodoDto> todos = todoService.getAllTodos();
+            //return new ResponseEntity<>(todos, HttpStatus.OK);
+            return ResponseEntity.ok(todos);
+        }
+        return ResponseEntity.ok(todoService.getTodosAfter(after, limit));
+    }
+
+    //Stream every todo as NDJSON (default) or as one JSON array (?format=json), row by row off a DB cursor
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamTodos(@RequestParam(defaultValue = "ndjson") String format) {
+        boolean jsonArray = "json".equalsIgnoreCase(format);
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+                if (jsonArray) {
+                    gen.writeStartArray();
+                } else {
+                    gen.setRootValueSeparator(new SerializedString("\n"));
+                }
+                int[] written = {0};
+                todoService.streamAllTodos(dto -> {
+                    try {
+                        gen.writeObject(dto);
+                        if (++written[0] % STREAM_FLUSH_EVERY == 0) {
+                            gen.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if (jsonArray) {
+                    gen.writeEndArray();
+                } else if (written[0] > 0) {
+                    gen.writeRaw('\n');
+                }
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(jsonArray ? MediaType.APPLICATION_JSON : APPLICATION_NDJSON)
+                .body(body);
     }
 
     //Build Update Todo Rest Api
@@ -0,0 +1,36 @@
+package net.javaguides.todo.controller;
+
+import lombok.AllArgsConstructor;
+import net.javaguides.todo.cache.TodoCache;
+import net.javaguides.todo.push.TodoEventHub;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Server-Sent Events instead of polling: each event is named after TodoChangeEvent.type and carries
+// the changed DTO(s) as JSON. EventSource cannot send headers, so these paths also accept ?access_token=.
+@CrossOrigin("*")
+@RestController
+@RequestMapping("api/todos")
+@AllArgsConstructor
+public class TodoEventController {
+
+    private TodoEventHub todoEventHub;
+    private TodoCache todoCache;
+
+    //every todo, item and message change
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter allEvents() {
+        return todoEventHub.subscribe(null);
+    }
+
+    //changes to one todo, its items and its messages
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @GetMapping(value = "{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter todoEvents(@PathVariable("id") Long todoId) {
+        todoCache.getTodo(todoId); // 404 for unknown todos
+        return todoEventHub.subscribe(todoId);
+    }
+}
@@ -33,6 +33,14 @@ public class TodoItemController {
         return new ResponseEntity<>(saved, HttpStatus.CREATED);
     }
 
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("batch")
+    public ResponseEntity<List<TodoItemDto>> addBatch(@PathVariable Long todoId,
+                                                      @RequestBody Map<String, List<String>> body) {
+        List<TodoItemDto> saved = todoItemService.addItems(todoId, body.get("titles"));
+        return new ResponseEntity<>(saved, HttpStatus.CREATED);
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @DeleteMapping("{itemId}")
     public ResponseEntity<String> delete(@PathVariable Long todoId,
@@ -48,6 +56,20 @@ public class TodoItemController {
         return ResponseEntity.ok(todoItemService.completeItem(itemId));
     }
 
+    // body {"itemIds": [...]}; an empty list is rejected rather than read as "everything"
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @PatchMapping("complete")
+    public ResponseEntity<List<TodoItemDto>> completeBatch(@PathVariable Long todoId,
+                                                           @RequestBody Map<String, List<Long>> body) {
+        return ResponseEntity.ok(todoItemService.completeItems(todoId, body.get("itemIds")));
+    }
+
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    @PatchMapping("complete-all")
+    public ResponseEntity<List<TodoItemDto>> completeAll(@PathVariable Long todoId) {
+        return ResponseEntity.ok(todoItemService.completeRemainingItems(todoId));
+    }
+
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
     @PatchMapping("{itemId}/incomplete")
     public ResponseEntity<TodoItemDto> incomplete(@PathVariable Long todoId,
@@ -0,0 +1,18 @@
+package net.javaguides.todo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRegisterResponse {
+    private int created;
+    // "row N (username): reason" for every row that was skipped
+    private List<String> rejected;
+}
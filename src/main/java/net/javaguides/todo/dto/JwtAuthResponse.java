@@ -11,6 +11,7 @@ import lombok.Setter;
 @NoArgsConstructor
 public class JwtAuthResponse {
     private String accessToken;
+    private String refreshToken;
     private String tokenType = "Bearer";
     private String role;
     private String firstName;
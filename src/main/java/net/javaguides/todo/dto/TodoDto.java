@@ -26,5 +26,7 @@ public class TodoDto {
     private String reviewedBy;
     private LocalDateTime reviewedAt;
     private boolean isOverdue;
+    private long itemsTotal;
+    private long itemsCompleted;
 
 }
@@ -0,0 +1,18 @@
+package net.javaguides.todo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TodoStatsDto {
+    private Long total;
+    private Long completed;
+    private Long pendingReview;
+    private Long reviewed;
+    private Long overdue;
+}
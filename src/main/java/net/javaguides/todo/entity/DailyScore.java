@@ -0,0 +1,45 @@
+package net.javaguides.todo.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+// One row per user per day, pre-aggregating what the leaderboards rank,
+// so a date-range board sums bucket rows instead of rescanning todos and todo_items.
+// Written through DailyScoreRepository.upsert only.
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "leaderboard_daily", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_leaderboard_daily_date_user", columnNames = {"bucket_date", "user_id"})
+})
+public class DailyScore {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "bucket_date", nullable = false)
+    private LocalDate bucketDate;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // todos finished that day
+    @Column(name = "finished_todos", nullable = false)
+    private long finishedTodos;
+
+    // items completed that day
+    @Column(name = "completed_items", nullable = false)
+    private long completedItems;
+
+    // items completed that day in todos that currently have two or more completers
+    @Column(name = "collab_items", nullable = false)
+    private long collabItems;
+}
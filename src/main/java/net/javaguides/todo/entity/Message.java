@@ -13,9 +13,14 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "messages")
+// (todo_id, id) serves the per-thread cursors in both directions
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_todo_id", columnList = "todo_id, id")
+})
 public class Message {
 
+    // IDENTITY, not a pooled sequence: the afterId/beforeId cursors need ids in insert order across instances,
+    // which blocks of 50 handed to each instance would not give
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -0,0 +1,44 @@
+package net.javaguides.todo.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Opaque refresh token, stored as its SHA-256 only. Every refresh revokes the presented token and
+// issues the next one in the same family; presenting a revoked token again revokes the whole family.
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "refresh_tokens", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_refresh_tokens_hash", columnNames = "token_hash")
+}, indexes = {
+        @Index(name = "idx_refresh_tokens_family", columnList = "family_id")
+})
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "token_hash", nullable = false, length = 64)
+    private String tokenHash;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // shared by a login's token and all its rotations
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "revoked_at")
+    private LocalDateTime revokedAt;
+}
@@ -0,0 +1,27 @@
+package net.javaguides.todo.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// jti of an access token revoked before its exp; the row is only needed until then.
+// Read back in bulk by AccessTokenRevocations, never per request.
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "revoked_access_tokens")
+public class RevokedAccessToken {
+
+    @Id
+    @Column(length = 36)
+    private String jti;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
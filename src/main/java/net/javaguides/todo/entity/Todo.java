@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.DynamicUpdate;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import java.time.LocalDate;
@@ -18,11 +19,17 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name="todos")
+@DynamicUpdate // entity saves only write changed columns, so they never clobber the atomically maintained item counters
+@Table(name="todos", indexes = {
+        @Index(name = "idx_todos_overdue", columnList = "is_overdue, completed, due_date"),
+        @Index(name = "idx_todos_finisher", columnList = "completed_by_user_id, completed_at")
+})
 public class Todo {
 
+    // pooled sequence (a hi-lo table on MySQL) instead of IDENTITY so Hibernate can batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "todos_seq")
+    @SequenceGenerator(name = "todos_seq", sequenceName = "todos_seq", allocationSize = 50)
     private Long id;
 
     @DateTimeFormat(pattern = "yyyy-MM-dd")
@@ -59,6 +66,13 @@ public class Todo {
     @Column(nullable = false)
     private boolean isOverdue = false;
 
+    // denormalized item counters, only ever changed through TodoRepository.adjustItemCounters
+    @Column(nullable = false)
+    private long itemsTotal = 0;
+
+    @Column(nullable = false)
+    private long itemsCompleted = 0;
+
     @OneToMany(mappedBy="todo", cascade = {CascadeType.PERSIST, CascadeType.MERGE}, orphanRemoval = true)
     @JsonIgnore
     private List<TodoItem> items = new ArrayList<>();
@@ -14,11 +14,16 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "todo_items")
+// the completer index serves the per-user leaderboard detail pages, newest first
+@Table(name = "todo_items", indexes = {
+        @Index(name = "idx_todo_items_completer", columnList = "completed_by, completed_at")
+})
 public class TodoItem {
 
+    // pooled sequence instead of IDENTITY so bulk item inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "todo_items_seq")
+    @SequenceGenerator(name = "todo_items_seq", sequenceName = "todo_items_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import net.javaguides.todo.security.UserSecurityListener;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -14,11 +15,14 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@EntityListeners(UserSecurityListener.class)
 @Table(name = "users")
 public class User {
 
+    // pooled sequence instead of IDENTITY so batch registration can JDBC-batch its inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "first_name", nullable = false)
@@ -0,0 +1,7 @@
+package net.javaguides.todo.event;
+
+import java.time.LocalDate;
+
+// Completed items of one todo credited to one user on one day.
+public record CompletedItemCount(Long userId, LocalDate day, long count) {
+}
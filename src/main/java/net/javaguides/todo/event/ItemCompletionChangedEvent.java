@@ -0,0 +1,8 @@
+package net.javaguides.todo.event;
+
+import java.time.LocalDate;
+
+// Published after items of a todo are completed (positive delta) or un-completed / deleted (negative delta)
+// on behalf of one user; day is when the affected items were completed.
+public record ItemCompletionChangedEvent(Long todoId, Long userId, String userName, LocalDate day, long delta) {
+}
@@ -0,0 +1,22 @@
+package net.javaguides.todo.event;
+
+// A change clients may want pushed to them, published by the services and fanned out after commit by TodoEventHub.
+// todoId is null for changes that belong to no single todo (a batch of new todos); data is the changed DTO(s) or ids.
+public record TodoChangeEvent(Long todoId, String type, Object data) {
+
+    public static final String TODO_CREATED = "todo.created";
+    public static final String TODOS_CREATED = "todos.created";
+    public static final String TODO_UPDATED = "todo.updated";
+    public static final String TODO_COMPLETED = "todo.completed";
+    public static final String TODO_REOPENED = "todo.reopened";
+    public static final String TODO_REVIEWED = "todo.reviewed";
+    public static final String TODO_DELETED = "todo.deleted";
+    public static final String ITEM_ADDED = "item.added";
+    public static final String ITEMS_ADDED = "items.added";
+    public static final String ITEM_COMPLETED = "item.completed";
+    public static final String ITEMS_COMPLETED = "items.completed";
+    public static final String ITEM_REOPENED = "item.reopened";
+    public static final String ITEM_DELETED = "item.deleted";
+    public static final String MESSAGE_ADDED = "message.added";
+    public static final String MESSAGE_DELETED = "message.deleted";
+}
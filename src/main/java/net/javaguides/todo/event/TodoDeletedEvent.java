@@ -0,0 +1,10 @@
+package net.javaguides.todo.event;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Published after a todo and its items are deleted. finisherId is null when it was not completed;
+// completedItems is what its items contributed per completer and day, read before the delete.
+public record TodoDeletedEvent(Long todoId, Long finisherId, LocalDate finishedOn,
+                               List<CompletedItemCount> completedItems) {
+}
@@ -0,0 +1,10 @@
+package net.javaguides.todo.event;
+
+import java.time.LocalDate;
+
+// Published when the user credited with finishing a todo changes; ids are null when there is none,
+// and the dates are the days the previous and the new finisher completed it.
+public record TodoFinisherChangedEvent(Long todoId,
+                                       Long previousFinisherId, LocalDate previousFinishedOn,
+                                       Long finisherId, String finisherName, LocalDate finishedOn) {
+}
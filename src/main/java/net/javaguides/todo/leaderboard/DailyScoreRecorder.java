@@ -0,0 +1,153 @@
+package net.javaguides.todo.leaderboard;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.javaguides.todo.entity.DailyScore;
+import net.javaguides.todo.event.CompletedItemCount;
+import net.javaguides.todo.event.ItemCompletionChangedEvent;
+import net.javaguides.todo.event.TodoDeletedEvent;
+import net.javaguides.todo.event.TodoFinisherChangedEvent;
+import net.javaguides.todo.repository.DailyScoreRepository;
+import net.javaguides.todo.repository.TodoItemRepository;
+import net.javaguides.todo.repository.TodoRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Keeps leaderboard_daily in step with completions. Listens before commit, so the bucket
+// upserts land in the same transaction as the change that caused them (changes made outside
+// a transaction are applied right away, each upsert in its own).
+// Collab buckets follow LeaderboardEngine's rule: when a todo gains or loses its second
+// completer, every participant's items in it are added to or removed from their days.
+@Slf4j
+@Component
+@AllArgsConstructor
+public class DailyScoreRecorder {
+
+    private final DailyScoreRepository dailyScoreRepository;
+    private final TodoRepository todoRepository;
+    private final TodoItemRepository todoItemRepository;
+
+    // first start on an existing database: build the buckets once from the completion history
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillIfEmpty() {
+        if (dailyScoreRepository.count() > 0) {
+            return;
+        }
+        Map<Bucket, DailyScore> buckets = new HashMap<>();
+
+        for (Object[] r : todoRepository.finishedTodosByUserAndDay()) {
+            bucket(buckets, (LocalDate) r[1], (Long) r[0]).setFinishedTodos(((Number) r[2]).longValue());
+        }
+
+        List<Object[]> itemRows = todoItemRepository.completedItemsByTodoUserAndDay();
+        Map<Long, Set<Long>> completersByTodo = new HashMap<>();
+        for (Object[] r : itemRows) {
+            completersByTodo.computeIfAbsent((Long) r[0], id -> new HashSet<>()).add((Long) r[1]);
+        }
+        for (Object[] r : itemRows) {
+            long count = ((Number) r[3]).longValue();
+            DailyScore d = bucket(buckets, (LocalDate) r[2], (Long) r[1]);
+            d.setCompletedItems(d.getCompletedItems() + count);
+            if (completersByTodo.get((Long) r[0]).size() >= LeaderboardEngine.COLLAB_MIN_USERS) {
+                d.setCollabItems(d.getCollabItems() + count);
+            }
+        }
+
+        dailyScoreRepository.saveAll(buckets.values());
+        if (!buckets.isEmpty()) {
+            log.info("Backfilled {} leaderboard day buckets", buckets.size());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void on(TodoFinisherChangedEvent e) {
+        if (e.previousFinisherId() != null && e.previousFinishedOn() != null) {
+            dailyScoreRepository.upsert(e.previousFinishedOn(), e.previousFinisherId(), -1, 0, 0);
+        }
+        if (e.finisherId() != null && e.finishedOn() != null) {
+            dailyScoreRepository.upsert(e.finishedOn(), e.finisherId(), 1, 0, 0);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void on(ItemCompletionChangedEvent e) {
+        if (e.day() != null) {
+            dailyScoreRepository.upsert(e.day(), e.userId(), 0, e.delta(), 0);
+        }
+
+        // Two users completing items in the same todo at once must not both miss each other and skip the collab
+        // credit. The todo row lock queues them; the item paths run at READ COMMITTED, so once it is granted the
+        // read below includes everything the previous holder committed.
+        todoRepository.lockById(e.todoId());
+
+        // the todo's completers after the change; the state before is this minus the event's delta
+        List<Object[]> rows = todoItemRepository.completedItemsByUserAndDay(e.todoId());
+        Map<Long, Long> perUser = new HashMap<>();
+        for (Object[] r : rows) {
+            perUser.merge((Long) r[0], ((Number) r[2]).longValue(), Long::sum);
+        }
+        long userAfter = perUser.getOrDefault(e.userId(), 0L);
+        long userBefore = userAfter - e.delta();
+        int usersAfter = perUser.size();
+        int usersBefore = usersAfter - (userAfter > 0 ? 1 : 0) + (userBefore > 0 ? 1 : 0);
+        boolean wasCollab = usersBefore >= LeaderboardEngine.COLLAB_MIN_USERS;
+        boolean isCollab = usersAfter >= LeaderboardEngine.COLLAB_MIN_USERS;
+
+        if (wasCollab && isCollab) {
+            if (e.day() != null) {
+                dailyScoreRepository.upsert(e.day(), e.userId(), 0, 0, e.delta());
+            }
+        } else if (isCollab) {
+            addCollab(rows, 1);
+        } else if (wasCollab) {
+            // remove the todo's pre-change contribution: what is left now, plus the items this event took away
+            addCollab(rows, -1);
+            if (e.day() != null) {
+                dailyScoreRepository.upsert(e.day(), e.userId(), 0, 0, e.delta());
+            }
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void on(TodoDeletedEvent e) {
+        if (e.finisherId() != null && e.finishedOn() != null) {
+            dailyScoreRepository.upsert(e.finishedOn(), e.finisherId(), -1, 0, 0);
+        }
+        Set<Long> completers = new HashSet<>();
+        e.completedItems().forEach(c -> completers.add(c.userId()));
+        boolean collab = completers.size() >= LeaderboardEngine.COLLAB_MIN_USERS;
+        for (CompletedItemCount c : e.completedItems()) {
+            if (c.day() != null) {
+                dailyScoreRepository.upsert(c.day(), c.userId(), 0, -c.count(), collab ? -c.count() : 0);
+            }
+        }
+    }
+
+    private void addCollab(List<Object[]> rows, int sign) {
+        for (Object[] r : rows) {
+            if (r[1] != null) {
+                dailyScoreRepository.upsert((LocalDate) r[1], (Long) r[0], 0, 0, sign * ((Number) r[2]).longValue());
+            }
+        }
+    }
+
+    private static DailyScore bucket(Map<Bucket, DailyScore> buckets, LocalDate day, Long userId) {
+        return buckets.computeIfAbsent(new Bucket(day, userId),
+                b -> new DailyScore(null, day, userId, 0, 0, 0));
+    }
+
+    private record Bucket(LocalDate day, Long userId) {
+    }
+}
@@ -0,0 +1,196 @@
+package net.javaguides.todo.leaderboard;
+
+import lombok.extern.slf4j.Slf4j;
+import net.javaguides.todo.dto.CollabRowDto;
+import net.javaguides.todo.dto.FinisherRowWithIdDto;
+import net.javaguides.todo.event.ItemCompletionChangedEvent;
+import net.javaguides.todo.event.TodoDeletedEvent;
+import net.javaguides.todo.event.TodoFinisherChangedEvent;
+import net.javaguides.todo.repository.TodoItemRepository;
+import net.javaguides.todo.repository.TodoRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// In-memory finisher and collab leaderboards. Seeded from two GROUP BY queries at startup,
+// then kept current from the completion events the services publish after commit.
+// Finisher score: todos the user is credited with finishing.
+// Collab score: items the user completed in todos where at least two distinct users completed items.
+@Slf4j
+@Component
+public class LeaderboardEngine {
+
+    static final int COLLAB_MIN_USERS = 2;
+
+    private final TodoRepository todoRepository;
+    private final TodoItemRepository todoItemRepository;
+
+    private final RankedScores finishers = new RankedScores();
+    private final RankedScores collaborators = new RankedScores();
+    // todoId -> userId -> completed items in that todo
+    private final Map<Long, Map<Long, Long>> itemsByTodo = new HashMap<>();
+    // userId -> todos the user has completed items in
+    private final Map<Long, Set<Long>> todosByUser = new HashMap<>();
+    private final Map<Long, String> names = new HashMap<>();
+
+    public LeaderboardEngine(TodoRepository todoRepository, TodoItemRepository todoItemRepository) {
+        this.todoRepository = todoRepository;
+        this.todoItemRepository = todoItemRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reload() {
+        finishers.clear();
+        collaborators.clear();
+        itemsByTodo.clear();
+        todosByUser.clear();
+        names.clear();
+
+        for (Object[] r : todoRepository.finisherLeaderboardByUserId()) {
+            Long userId = (Long) r[0];
+            remember(userId, (String) r[1]);
+            finishers.add(userId, ((Number) r[2]).longValue());
+        }
+        for (Object[] r : todoItemRepository.completedItemCountsByTodoAndUser()) {
+            Long userId = (Long) r[1];
+            remember(userId, (String) r[2]);
+            applyItems((Long) r[0], userId, ((Number) r[3]).longValue());
+        }
+        log.info("Leaderboards loaded: {} finishers, {} todos with completed items", finishers.size(), itemsByTodo.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void on(TodoFinisherChangedEvent e) {
+        if (e.previousFinisherId() != null) {
+            finishers.add(e.previousFinisherId(), -1);
+        }
+        if (e.finisherId() != null) {
+            remember(e.finisherId(), e.finisherName());
+            finishers.add(e.finisherId(), 1);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void on(ItemCompletionChangedEvent e) {
+        remember(e.userId(), e.userName());
+        applyItems(e.todoId(), e.userId(), e.delta());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void on(TodoDeletedEvent e) {
+        if (e.finisherId() != null) {
+            finishers.add(e.finisherId(), -1);
+        }
+        Map<Long, Long> counts = itemsByTodo.remove(e.todoId());
+        if (counts == null) {
+            return;
+        }
+        boolean collab = counts.size() >= COLLAB_MIN_USERS;
+        counts.forEach((userId, count) -> {
+            forgetTodo(userId, e.todoId());
+            if (collab) {
+                collaborators.add(userId, -count);
+            }
+        });
+    }
+
+    public synchronized List<FinisherRowWithIdDto> topFinishers(int limit) {
+        List<FinisherRowWithIdDto> out = new ArrayList<>();
+        for (RankedScores.Entry entry : finishers.top(limit)) {
+            out.add(new FinisherRowWithIdDto(entry.userId(), names.get(entry.userId()), entry.score()));
+        }
+        return out;
+    }
+
+    public synchronized List<CollabRowDto> topCollaborators(int limit) {
+        List<CollabRowDto> out = new ArrayList<>();
+        for (RankedScores.Entry entry : collaborators.top(limit)) {
+            out.add(new CollabRowDto(entry.userId(), names.get(entry.userId()), entry.score()));
+        }
+        return out;
+    }
+
+    public synchronized long finisherScore(Long userId) {
+        return finishers.score(userId);
+    }
+
+    public synchronized Integer finisherRank(Long userId) {
+        return finishers.rank(userId);
+    }
+
+    public synchronized long collabScore(Long userId) {
+        return collaborators.score(userId);
+    }
+
+    public synchronized Integer collabRank(Long userId) {
+        return collaborators.rank(userId);
+    }
+
+    // todos in which the user's completed items currently count towards the collab board
+    public synchronized List<Long> collabTodoIds(Long userId) {
+        List<Long> out = new ArrayList<>();
+        for (Long todoId : todosByUser.getOrDefault(userId, Set.of())) {
+            if (itemsByTodo.get(todoId).size() >= COLLAB_MIN_USERS) {
+                out.add(todoId);
+            }
+        }
+        return out;
+    }
+
+    // a todo's items count for collab only while it has enough distinct completers,
+    // so crossing the threshold adds or removes every participant's items at once
+    private void applyItems(Long todoId, Long userId, long delta) {
+        Map<Long, Long> counts = itemsByTodo.computeIfAbsent(todoId, id -> new HashMap<>());
+        boolean wasCollab = counts.size() >= COLLAB_MIN_USERS;
+        long before = counts.getOrDefault(userId, 0L);
+        long after = Math.max(0L, before + delta);
+        if (after > 0) {
+            counts.put(userId, after);
+            todosByUser.computeIfAbsent(userId, id -> new HashSet<>()).add(todoId);
+        } else {
+            counts.remove(userId);
+            forgetTodo(userId, todoId);
+        }
+        boolean isCollab = counts.size() >= COLLAB_MIN_USERS;
+
+        if (wasCollab && isCollab) {
+            collaborators.add(userId, after - before);
+        } else if (!wasCollab && isCollab) {
+            counts.forEach(collaborators::add);
+        } else if (wasCollab) {
+            collaborators.add(userId, -before);
+            counts.forEach((other, count) -> {
+                if (!other.equals(userId)) {
+                    collaborators.add(other, -count);
+                }
+            });
+        }
+        if (counts.isEmpty()) {
+            itemsByTodo.remove(todoId);
+        }
+    }
+
+    private void forgetTodo(Long userId, Long todoId) {
+        Set<Long> todos = todosByUser.get(userId);
+        if (todos != null) {
+            todos.remove(todoId);
+            if (todos.isEmpty()) {
+                todosByUser.remove(userId);
+            }
+        }
+    }
+
+    private void remember(Long userId, String name) {
+        if (userId != null && name != null) {
+            names.put(userId, name);
+        }
+    }
+}
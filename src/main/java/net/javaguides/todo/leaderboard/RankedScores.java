@@ -0,0 +1,113 @@
+package net.javaguides.todo.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Per-user scores kept in score order. A TreeSet gives top-N by walking from the head,
+// and a Fenwick tree indexed by score counts users per score so rank is O(log n) too.
+// Only positive scores are ranked. Not thread-safe; LeaderboardEngine serializes access.
+class RankedScores {
+
+    record Entry(long userId, long score) {
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingLong(Entry::score).reversed()
+            .thenComparingLong(Entry::userId);
+
+    private final Map<Long, Long> scores = new HashMap<>();
+    private final TreeSet<Entry> ranking = new TreeSet<>(ORDER);
+    // tree[i] covers users per score value; index 1..capacity
+    private long[] tree = new long[65];
+
+    void clear() {
+        scores.clear();
+        ranking.clear();
+        tree = new long[65];
+    }
+
+    void add(long userId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        long before = scores.getOrDefault(userId, 0L);
+        long after = Math.max(0L, before + delta);
+        if (before == after) {
+            return;
+        }
+        if (before > 0) {
+            ranking.remove(new Entry(userId, before));
+            update(before, -1);
+        }
+        if (after > 0) {
+            scores.put(userId, after);
+            ranking.add(new Entry(userId, after));
+            update(after, 1);
+        } else {
+            scores.remove(userId);
+        }
+    }
+
+    int size() {
+        return scores.size();
+    }
+
+    long score(long userId) {
+        return scores.getOrDefault(userId, 0L);
+    }
+
+    // 1 + users with a strictly higher score; null when the user has no score
+    Integer rank(long userId) {
+        long score = score(userId);
+        if (score == 0) {
+            return null;
+        }
+        return (int) (1 + scores.size() - prefix(score));
+    }
+
+    List<Entry> top(int limit) {
+        List<Entry> out = new ArrayList<>(Math.min(limit, ranking.size()));
+        Iterator<Entry> it = ranking.iterator();
+        while (it.hasNext() && out.size() < limit) {
+            out.add(it.next());
+        }
+        return out;
+    }
+
+    private void update(long score, int delta) {
+        if (score >= tree.length) {
+            // only reachable when adding: grow() rebuilds from scores, which already holds the new value
+            grow(score);
+            return;
+        }
+        for (int i = (int) score; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private long prefix(long score) {
+        long sum = 0;
+        for (int i = (int) Math.min(score, tree.length - 1); i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void grow(long score) {
+        int capacity = tree.length - 1;
+        while (capacity < score) {
+            capacity *= 2;
+        }
+        tree = new long[capacity + 1];
+        for (long s : scores.values()) {
+            for (int i = (int) s; i < tree.length; i += i & -i) {
+                tree[i]++;
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package net.javaguides.todo.push;
+
+import lombok.AllArgsConstructor;
+import net.javaguides.todo.event.TodoChangeEvent;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+
+// Broadcasts committed message changes to /topic/todos/{todoId}/messages, whether they came in
+// over STOMP or REST. The payload is the MessageDto (or the deleted message's ids); the
+// "event" header says which.
+@Component
+@AllArgsConstructor
+public class ChatRelay {
+
+    private SimpMessagingTemplate messagingTemplate;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void on(TodoChangeEvent e) {
+        if (!TodoChangeEvent.MESSAGE_ADDED.equals(e.type()) && !TodoChangeEvent.MESSAGE_DELETED.equals(e.type())) {
+            return;
+        }
+        messagingTemplate.convertAndSend("/topic/todos/" + e.todoId() + "/messages",
+                e.data() != null ? e.data() : Map.of(), Map.of("event", e.type()));
+    }
+}
@@ -0,0 +1,202 @@
+package net.javaguides.todo.push;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.javaguides.todo.event.TodoChangeEvent;
+import net.javaguides.todo.exception.TodoAPIException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process fan-out of TodoChangeEvents to SSE subscribers, either of one todo or of the global feed.
+// Publishing never blocks on a client: each subscriber has a bounded buffer drained by a small sender pool,
+// and a subscriber whose buffer fills up (a slow or stalled consumer) is disconnected; it can reconnect and
+// catch up through the REST endpoints.
+@Slf4j
+@Component
+public class TodoEventHub {
+
+    private final Set<Subscriber> globalSubscribers = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<Subscriber>> todoSubscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final int maxSubscribers;
+    private final ExecutorService senders;
+    private final Counter dropped;
+
+    public TodoEventHub(@Value("${app.sse.buffer-size:256}") int bufferSize,
+                        @Value("${app.sse.timeout-ms:1800000}") long timeoutMillis,
+                        @Value("${app.sse.max-subscribers:1000}") int maxSubscribers,
+                        @Value("${app.sse.sender-threads:4}") int senderThreads,
+                        MeterRegistry meterRegistry) {
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+        this.maxSubscribers = maxSubscribers;
+        // platform threads even in the virtual profile: SseEmitter.send writes to the socket inside a synchronized
+        // block, which would pin a virtual thread's carrier for as long as the client is stalled
+        this.senders = Executors.newFixedThreadPool(senderThreads);
+        this.dropped = Counter.builder("todo.events.dropped")
+                .description("SSE subscribers disconnected for falling behind")
+                .register(meterRegistry);
+        meterRegistry.gauge("todo.events.subscribers", subscriberCount);
+    }
+
+    // todoId null subscribes to every change
+    public SseEmitter subscribe(Long todoId) {
+        return subscribe(todoId, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(Long todoId, SseEmitter emitter) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new TodoAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Too many event subscribers, please retry later.");
+        }
+        Subscriber subscriber = new Subscriber(todoId, emitter);
+        subscribersOf(todoId).add(subscriber);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+
+        subscriber.offer(SseEmitter.event().comment("connected"));
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void on(TodoChangeEvent e) {
+        long id = sequence.incrementAndGet();
+        if (e.todoId() != null) {
+            Set<Subscriber> subscribers = todoSubscribers.get(e.todoId());
+            if (subscribers != null) {
+                subscribers.forEach(s -> s.offer(eventOf(id, e)));
+            }
+        }
+        globalSubscribers.forEach(s -> s.offer(eventOf(id, e)));
+    }
+
+    // keeps idle connections open through proxies and finds clients that went away
+    @Scheduled(fixedRateString = "${app.sse.heartbeat-ms:25000}")
+    public void heartbeat() {
+        globalSubscribers.forEach(s -> s.offer(SseEmitter.event().comment("ping")));
+        todoSubscribers.values().forEach(subscribers ->
+                subscribers.forEach(s -> s.offer(SseEmitter.event().comment("ping"))));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+
+    // a builder is consumed by a single send, so every subscriber gets its own
+    private static SseEmitter.SseEventBuilder eventOf(long id, TodoChangeEvent e) {
+        return SseEmitter.event()
+                .id(Long.toString(id))
+                .name(e.type())
+                .data(e.data() != null ? e.data() : Map.of(), MediaType.APPLICATION_JSON);
+    }
+
+    private Set<Subscriber> subscribersOf(Long todoId) {
+        return todoId == null
+                ? globalSubscribers
+                : todoSubscribers.computeIfAbsent(todoId, id -> ConcurrentHashMap.newKeySet());
+    }
+
+    private final class Subscriber {
+
+        private final Long todoId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // set by the publisher when dropping a slow subscriber; the next drain completes the emitter
+        private final AtomicBoolean evicted = new AtomicBoolean();
+
+        Subscriber(Long todoId, SseEmitter emitter) {
+            this.todoId = todoId;
+            this.emitter = emitter;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                dropped.increment();
+                log.debug("Dropping slow SSE subscriber of {}", todoId != null ? "todo " + todoId : "all todos");
+                // not emitter.complete() here: it waits for the emitter's monitor, which a send stuck on this
+                // very client holds, and the publisher must never wait on a client
+                evicted.set(true);
+                close();
+                scheduleDrain();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RuntimeException e) {
+                    // sender pool shut down
+                    draining.set(false);
+                }
+            }
+        }
+
+        // at most one drain per subscriber at a time, so its events stay in order
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed.get() && (event = buffer.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            } finally {
+                draining.set(false);
+            }
+            if (evicted.compareAndSet(true, false)) {
+                emitter.complete();
+            } else if (!closed.get() && !buffer.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            buffer.clear();
+            subscriberCount.decrementAndGet();
+            if (todoId == null) {
+                globalSubscribers.remove(this);
+            } else {
+                todoSubscribers.computeIfPresent(todoId, (id, subscribers) -> {
+                    subscribers.remove(this);
+                    return subscribers.isEmpty() ? null : subscribers;
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package net.javaguides.todo.repository;
+
+import net.javaguides.todo.entity.DailyScore;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyScoreRepository extends JpaRepository<DailyScore, Long> {
+
+    // adds the deltas to the (day, user) bucket, creating it on first use; native because JPQL has no upsert
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO leaderboard_daily (bucket_date, user_id, finished_todos, completed_items, collab_items) " +
+            "VALUES (?1, ?2, ?3, ?4, ?5) " +
+            "ON DUPLICATE KEY UPDATE finished_todos = finished_todos + ?3, " +
+            "completed_items = completed_items + ?4, collab_items = collab_items + ?5",
+            nativeQuery = true)
+    int upsert(LocalDate day, Long userId, long finishedTodos, long completedItems, long collabItems);
+
+    @Query("SELECT d.userId, u.firstName, SUM(d.finishedTodos) " +
+            "FROM DailyScore d JOIN User u ON u.id = d.userId " +
+            "WHERE d.bucketDate BETWEEN ?1 AND ?2 " +
+            "GROUP BY d.userId, u.firstName " +
+            "HAVING SUM(d.finishedTodos) > 0 " +
+            "ORDER BY SUM(d.finishedTodos) DESC, d.userId ASC")
+    List<Object[]> finisherBoard(LocalDate from, LocalDate to, Limit limit);
+
+    @Query("SELECT d.userId, u.firstName, SUM(d.collabItems) " +
+            "FROM DailyScore d JOIN User u ON u.id = d.userId " +
+            "WHERE d.bucketDate BETWEEN ?1 AND ?2 " +
+            "GROUP BY d.userId, u.firstName " +
+            "HAVING SUM(d.collabItems) > 0 " +
+            "ORDER BY SUM(d.collabItems) DESC, d.userId ASC")
+    List<Object[]> collabBoard(LocalDate from, LocalDate to, Limit limit);
+}
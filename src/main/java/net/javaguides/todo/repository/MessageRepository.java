@@ -1,10 +1,28 @@
 package net.javaguides.todo.repository;
 
 import net.javaguides.todo.entity.Message;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
     List<Message> findByTodo_IdOrderByCreatedAtAsc(Long todoId);
+
+    // thread rows with the author's columns projected from the join, so listing loads no User (and none of its EAGER roles);
+    // columns: id, userId, username, firstName, lastName, content, createdAt
+    String MESSAGE_ROW_SELECT = "SELECT m.id, u.id, u.username, u.firstName, u.lastName, m.content, m.createdAt " +
+            "FROM Message m JOIN m.user u ";
+
+    @Query(MESSAGE_ROW_SELECT + "WHERE m.todo.id = ?1 ORDER BY m.createdAt ASC, m.id ASC")
+    List<Object[]> findRowsByTodo(Long todoId);
+
+    // messages newer than the client's last one, oldest first
+    @Query(MESSAGE_ROW_SELECT + "WHERE m.todo.id = ?1 AND m.id > ?2 ORDER BY m.id ASC")
+    List<Object[]> findRowsAfter(Long todoId, Long afterId, Limit limit);
+
+    // the newest messages older than beforeId, newest first
+    @Query(MESSAGE_ROW_SELECT + "WHERE m.todo.id = ?1 AND m.id < ?2 ORDER BY m.id DESC")
+    List<Object[]> findRowsBefore(Long todoId, Long beforeId, Limit limit);
 }
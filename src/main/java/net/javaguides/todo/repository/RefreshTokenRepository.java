@@ -0,0 +1,27 @@
+package net.javaguides.todo.repository;
+
+import net.javaguides.todo.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    // conditional, so of two concurrent refreshes with the same token only one wins
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.revokedAt = ?2 WHERE r.id = ?1 AND r.revokedAt IS NULL")
+    int revoke(Long id, LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.revokedAt = ?2 WHERE r.familyId = ?1 AND r.revokedAt IS NULL")
+    int revokeFamily(String familyId, LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.expiresAt < ?1")
+    int deleteExpired(LocalDateTime now);
+}
@@ -0,0 +1,19 @@
+package net.javaguides.todo.repository;
+
+import net.javaguides.todo.entity.RevokedAccessToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface RevokedAccessTokenRepository extends JpaRepository<RevokedAccessToken, String> {
+
+    @Query("SELECT r.jti FROM RevokedAccessToken r WHERE r.expiresAt > ?1")
+    List<String> findActiveJtis(LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM RevokedAccessToken r WHERE r.expiresAt < ?1")
+    int deleteExpired(LocalDateTime now);
+}
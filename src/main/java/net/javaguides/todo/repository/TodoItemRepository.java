@@ -1,10 +1,17 @@
 package net.javaguides.todo.repository;
 
 import net.javaguides.todo.entity.TodoItem;
+import net.javaguides.todo.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface TodoItemRepository extends JpaRepository<TodoItem, Long> {
     List<TodoItem> findByTodo_IdOrderByIdAsc(Long todoId);
@@ -17,6 +24,35 @@ public interface TodoItemRepository extends JpaRepository<TodoItem, Long> {
 
     boolean existsByTodo_IdAndCompletedTrueAndCompletedBy_Username(Long todoId, String username);
 
+    @Query("SELECT i FROM TodoItem i JOIN FETCH i.todo LEFT JOIN FETCH i.completedBy WHERE i.id = ?1")
+    Optional<TodoItem> findWithCompleterById(Long itemId);
+
+    // conditional transitions: the returned row count says whether this caller won the race
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE TodoItem i SET i.completed = true, i.completedBy = ?2, i.completedAt = ?3 " +
+            "WHERE i.id = ?1 AND i.completed = false")
+    int completeIfOpen(Long itemId, User user, LocalDateTime completedAt);
+
+    // set-based bulk completion; the row count is what the todo counters move by
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE TodoItem i SET i.completed = true, i.completedBy = ?2, i.completedAt = ?3 " +
+            "WHERE i.todo.id = ?1 AND i.completed = false")
+    int completeAllOpen(Long todoId, User user, LocalDateTime completedAt);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE TodoItem i SET i.completed = true, i.completedBy = ?3, i.completedAt = ?4 " +
+            "WHERE i.todo.id = ?1 AND i.completed = false AND i.id IN ?2")
+    int completeOpenByIds(Long todoId, Collection<Long> itemIds, User user, LocalDateTime completedAt);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE TodoItem i SET i.completed = false, i.completedBy = null, i.completedAt = null " +
+            "WHERE i.id = ?1 AND i.completed = true")
+    int reopenIfCompleted(Long itemId);
+
     @Query("SELECT CASE WHEN COUNT(i) > 0 THEN true ELSE false END " +
             "FROM TodoItem i " +
             "WHERE i.todo.id = ?1 AND i.completed = true AND i.completedBy.username = ?2")
@@ -28,24 +64,39 @@ public interface TodoItemRepository extends JpaRepository<TodoItem, Long> {
             "GROUP BY i.completedBy.username")
     List<Object[]> countCompletedItemsByUser(Long todoId);
 
-    @Query("SELECT i.completedBy.id, i.completedBy.firstName, COUNT(i) " +
+    // seed for LeaderboardEngine: completed items per (todo, completer)
+    @Query("SELECT i.todo.id, i.completedBy.id, i.completedBy.firstName, COUNT(i) " +
             "FROM TodoItem i " +
             "WHERE i.completed = true AND i.completedBy IS NOT NULL " +
-            "AND (SELECT COUNT(DISTINCT i2.completedBy.username) " +
-            "     FROM TodoItem i2 " +
-            "     WHERE i2.todo = i.todo AND i2.completed = true AND i2.completedBy IS NOT NULL) >= 2 " +
-            "GROUP BY i.completedBy.id, i.completedBy.firstName " +
-            "ORDER BY COUNT(i) DESC")
-    List<Object[]> collabLeaderboard();
+            "GROUP BY i.todo.id, i.completedBy.id, i.completedBy.firstName")
+    List<Object[]> completedItemCountsByTodoAndUser();
 
+    // one keyset page, newest first: completed in [from, beforeAt), or at beforeAt with a smaller id.
+    // Collab todos are those where someone else completed an item too (LeaderboardEngine.COLLAB_MIN_USERS = 2)
     @Query("SELECT i.todo.id, i.todo.title, i.id, i.title, i.completedAt " +
             "FROM TodoItem i " +
             "WHERE i.completed = true " +
             "AND i.completedBy.id = ?1 " +
-            "AND (SELECT COUNT(DISTINCT i2.completedBy.username) " +
-            "     FROM TodoItem i2 " +
-            "     WHERE i2.todo = i.todo AND i2.completed = true AND i2.completedBy IS NOT NULL) >= 2 " +
-            "ORDER BY i.completedAt DESC")
-    List<Object[]> collabDetailsForUser(Long userId);
+            "AND EXISTS (SELECT o.id FROM TodoItem o " +
+            "WHERE o.todo = i.todo AND o.completed = true AND o.completedBy.id <> ?1) " +
+            "AND i.completedAt >= ?2 " +
+            "AND (i.completedAt < ?3 OR (i.completedAt = ?3 AND i.id < ?4)) " +
+            "ORDER BY i.completedAt DESC, i.id DESC")
+    List<Object[]> collabDetailsPage(Long userId, LocalDateTime from,
+                                     LocalDateTime beforeAt, Long beforeId, Limit limit);
+
+    // completer, completion day (null for legacy rows without completedAt) and count for one todo
+    @Query("SELECT i.completedBy.id, CAST(i.completedAt AS LocalDate), COUNT(i) " +
+            "FROM TodoItem i " +
+            "WHERE i.todo.id = ?1 AND i.completed = true AND i.completedBy IS NOT NULL " +
+            "GROUP BY i.completedBy.id, CAST(i.completedAt AS LocalDate)")
+    List<Object[]> completedItemsByUserAndDay(Long todoId);
+
+    // one-off backfill of leaderboard_daily
+    @Query("SELECT i.todo.id, i.completedBy.id, CAST(i.completedAt AS LocalDate), COUNT(i) " +
+            "FROM TodoItem i " +
+            "WHERE i.completed = true AND i.completedBy IS NOT NULL AND i.completedAt IS NOT NULL " +
+            "GROUP BY i.todo.id, i.completedBy.id, CAST(i.completedAt AS LocalDate)")
+    List<Object[]> completedItemsByTodoUserAndDay();
 
 }
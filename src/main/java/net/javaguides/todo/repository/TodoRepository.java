@@ -1,19 +1,131 @@
 package net.javaguides.todo.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import net.javaguides.todo.dto.TodoDto;
+import net.javaguides.todo.dto.TodoStatsDto;
 import net.javaguides.todo.entity.Todo;
+import net.javaguides.todo.entity.User;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface TodoRepository extends JpaRepository<Todo,Long> {//todo here is entity under the entity package
+
+    // builds TodoDto in the same statement as the finisher join, so listing never touches the LAZY completedByUser
+    String TODO_DTO_SELECT = "SELECT new net.javaguides.todo.dto.TodoDto(" +
+            "t.id, t.dueDate, t.createdDate, t.title, t.description, t.completed, t.reviewed, " +
+            "u.id, u.firstName, t.completedAt, t.reviewedBy, t.reviewedAt, t.isOverdue, " +
+            "t.itemsTotal, t.itemsCompleted) " +
+            "FROM Todo t LEFT JOIN t.completedByUser u ";
+
     List<Todo> findByCompletedTrueAndReviewedFalse();
 
     List<Todo> findByCompletedTrueAndReviewedTrue();
 
     List<Todo> findByDueDateBefore(LocalDate date);
 
+    @Query(TODO_DTO_SELECT + "WHERE t.id = ?1")
+    Optional<TodoDto> findDtoById(Long id);
+
+    @Query(TODO_DTO_SELECT + "ORDER BY t.id ASC")
+    List<TodoDto> findAllDtos();
+
+    @Query(TODO_DTO_SELECT + "WHERE t.completed = true AND t.reviewed = false ORDER BY t.id ASC")
+    List<TodoDto> findPendingReviewDtos();
+
+    @Query(TODO_DTO_SELECT + "WHERE t.completed = true AND t.reviewed = true ORDER BY t.id ASC")
+    List<TodoDto> findReviewedDtos();
+
+    // range read on idx_todos_overdue (is_overdue, completed, due_date); the flag is kept current by OverdueSweeper
+    @Query(TODO_DTO_SELECT + "WHERE t.isOverdue = true AND t.completed = false ORDER BY t.dueDate ASC, t.id ASC")
+    List<TodoDto> findOverdueDtos();
+
+    @Transactional
+    @Modifying
+    // open todos only: on a completed todo the flag means "completed late" and is set by completeIfOpen
+    @Query("UPDATE Todo t SET t.isOverdue = true WHERE t.isOverdue = false AND t.completed = false AND t.dueDate < ?1")
+    int markOverdue(LocalDate today);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Todo t SET t.isOverdue = false WHERE t.isOverdue = true AND (t.dueDate IS NULL OR t.dueDate >= ?1)")
+    int clearOverdue(LocalDate today);
+
+    // all dashboard counters in one pass over todos (SUM is null on an empty table)
+    @Query("SELECT new net.javaguides.todo.dto.TodoStatsDto(" +
+            "COUNT(t), " +
+            "SUM(CASE WHEN t.completed = true THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN t.completed = true AND t.reviewed = false THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN t.reviewed = true THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN t.dueDate < ?1 AND t.completed = false THEN 1 ELSE 0 END)) " +
+            "FROM Todo t")
+    TodoStatsDto aggregateStats(LocalDate today);
+
+    // keyset page: rows strictly after the given id, in id order
+    @Query(TODO_DTO_SELECT + "WHERE t.id > ?1 ORDER BY t.id ASC")
+    List<TodoDto> findDtosAfter(Long afterId, Limit limit);
+
+    // server-side cursor (MySQL needs useCursorFetch=true on the JDBC url), caller must close the stream
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(TODO_DTO_SELECT + "ORDER BY t.id ASC")
+    Stream<TodoDto> streamAllDtos();
+
+    // conditional transitions: the returned row count says whether this caller won the race;
+    // completing also re-checks the item counters, which an item change may have moved since the caller's read
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Todo t SET t.completed = true, t.reviewed = false, t.completedByUser = ?2, t.completedAt = ?3, " +
+            "t.isOverdue = CASE WHEN t.dueDate < ?4 THEN true ELSE t.isOverdue END " +
+            "WHERE t.id = ?1 AND t.completed = false AND t.itemsCompleted = t.itemsTotal")
+    int completeIfOpen(Long id, User user, LocalDateTime completedAt, LocalDate today);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Todo t SET t.completed = false, t.completedByUser = null, t.completedAt = null, " +
+            "t.reviewed = false, t.reviewedBy = null, t.reviewedAt = null, " +
+            "t.isOverdue = CASE WHEN t.dueDate < ?2 THEN true ELSE false END " +
+            "WHERE t.id = ?1 AND t.completed = true AND t.reviewed = false")
+    int reopenIfCompleted(Long id, LocalDate today);
+
+    // SELECT ... FOR UPDATE on the todo row; held until the caller's transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t.id FROM Todo t WHERE t.id = ?1")
+    Optional<Long> lockById(Long id);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Todo t SET t.itemsTotal = t.itemsTotal + ?2, t.itemsCompleted = t.itemsCompleted + ?3 WHERE t.id = ?1")
+    int adjustItemCounters(Long todoId, long totalDelta, long completedDelta);
+
+    // rows of (todoId, itemsTotal, itemsCompleted, actualTotal, actualCompleted) whose counters disagree with todo_items
+    @Query("SELECT t.id, t.itemsTotal, t.itemsCompleted, " +
+            "(SELECT COUNT(i) FROM TodoItem i WHERE i.todo = t), " +
+            "(SELECT COUNT(i) FROM TodoItem i WHERE i.todo = t AND i.completed = true) " +
+            "FROM Todo t " +
+            "WHERE t.itemsTotal <> (SELECT COUNT(i) FROM TodoItem i WHERE i.todo = t) " +
+            "OR t.itemsCompleted <> (SELECT COUNT(i) FROM TodoItem i WHERE i.todo = t AND i.completed = true)")
+    List<Object[]> findItemCounterDrift();
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Todo t SET " +
+            "t.itemsTotal = (SELECT COUNT(i) FROM TodoItem i WHERE i.todo.id = t.id), " +
+            "t.itemsCompleted = (SELECT COUNT(i) FROM TodoItem i WHERE i.todo.id = t.id AND i.completed = true) " +
+            "WHERE t.id IN ?1")
+    int recomputeItemCounters(List<Long> todoIds);
+
     @Query("SELECT t.completedByUser.id, t.completedByUser.firstName, COUNT(t) " +
             "FROM Todo t " +
             "WHERE t.completed = true AND t.completedByUser IS NOT NULL " +
@@ -21,9 +133,20 @@ public interface TodoRepository extends JpaRepository<Todo,Long> {//todo here is
             "ORDER BY COUNT(t) DESC")
     List<Object[]> finisherLeaderboardByUserId();
 
+    // one keyset page, newest first: finished in [from, beforeAt), or at beforeAt with a smaller id
     @Query("SELECT t.id, t.title, t.completedAt " +
             "FROM Todo t " +
             "WHERE t.completed = true AND t.completedByUser.id = ?1 " +
-            "ORDER BY t.completedAt DESC")
-    List<Object[]> finisherDetailsByUserId(Long userId);
+            "AND t.completedAt >= ?2 " +
+            "AND (t.completedAt < ?3 OR (t.completedAt = ?3 AND t.id < ?4)) " +
+            "ORDER BY t.completedAt DESC, t.id DESC")
+    List<Object[]> finisherDetailsPage(Long userId, LocalDateTime from, LocalDateTime beforeAt, Long beforeId,
+                                       Limit limit);
+
+    // one-off backfill of leaderboard_daily
+    @Query("SELECT t.completedByUser.id, CAST(t.completedAt AS LocalDate), COUNT(t) " +
+            "FROM Todo t " +
+            "WHERE t.completed = true AND t.completedByUser IS NOT NULL AND t.completedAt IS NOT NULL " +
+            "GROUP BY t.completedByUser.id, CAST(t.completedAt AS LocalDate)")
+    List<Object[]> finishedTodosByUserAndDay();
 }
@@ -2,7 +2,10 @@ package net.javaguides.todo.repository;
 
 import net.javaguides.todo.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User,Long> {
@@ -14,4 +17,8 @@ public interface UserRepository extends JpaRepository<User,Long> {
 
     Boolean existsByUsername(String username);
 
+    // (username, email) of existing users clashing with any candidate, in one statement
+    @Query("SELECT u.username, u.email FROM User u WHERE u.username IN ?1 OR u.email IN ?2")
+    List<Object[]> findTaken(Collection<String> usernames, Collection<String> emails);
+
 }
@@ -0,0 +1,43 @@
+package net.javaguides.todo.scheduler;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.javaguides.todo.cache.TodoCache;
+import net.javaguides.todo.repository.TodoRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Safety net for the denormalized Todo.itemsTotal / itemsCompleted counters:
+// finds rows that disagree with todo_items, logs the drift and recomputes them.
+@Slf4j
+@Component
+@AllArgsConstructor
+public class ItemCounterReconciler {
+
+    private final TodoRepository todoRepository;
+    private final TodoCache todoCache;
+
+    @Scheduled(cron = "${app.item-counter-reconcile-cron:0 30 3 * * *}")
+    public int reconcile() {
+        List<Object[]> drift = todoRepository.findItemCounterDrift();
+        if (drift.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> todoIds = new ArrayList<>();
+        for (Object[] r : drift) {
+            Long todoId = (Long) r[0];
+            log.warn("Item counter drift on todo {}: total {} (actual {}), completed {} (actual {})",
+                    todoId, r[1], r[3], r[2], r[4]);
+            todoIds.add(todoId);
+        }
+
+        int fixed = todoRepository.recomputeItemCounters(todoIds);
+        todoIds.forEach(todoCache::evict);
+        log.warn("Item counter reconciliation repaired {} todo(s)", fixed);
+        return fixed;
+    }
+}
@@ -0,0 +1,40 @@
+package net.javaguides.todo.scheduler;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.javaguides.todo.cache.TodoCache;
+import net.javaguides.todo.repository.TodoRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+// Keeps Todo.isOverdue in step with the calendar using two set-based UPDATEs,
+// so reads can trust the flag instead of re-checking due dates per row.
+@Slf4j
+@Component
+@AllArgsConstructor
+public class OverdueSweeper {
+
+    private final TodoRepository todoRepository;
+    private final TodoCache todoCache;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void sweepOnStartup() {
+        sweep();
+    }
+
+    @Scheduled(cron = "${app.overdue-sweep-cron:0 0 0 * * *}")
+    public void sweep() {
+        LocalDate today = LocalDate.now();
+        int marked = todoRepository.markOverdue(today);
+        int cleared = todoRepository.clearOverdue(today);
+        if (marked > 0 || cleared > 0) {
+            // cached TodoDtos carry isOverdue
+            todoCache.evictAllTodos();
+            log.info("Overdue sweep for {}: {} marked, {} cleared", today, marked, cleared);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package net.javaguides.todo.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.javaguides.todo.entity.RevokedAccessToken;
+import net.javaguides.todo.repository.RevokedAccessTokenRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Revoked access-token ids (jti) held in memory, so the per-request check is a Bloom-filter probe that
+// almost always answers "not revoked" without touching the exact set, and never a query.
+// The snapshot is rebuilt from revoked_access_tokens on a schedule, which drops expired ids and
+// picks up revocations made by other instances; revocations made here are applied at once.
+@Slf4j
+@Component
+public class AccessTokenRevocations {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final RevokedAccessTokenRepository revokedAccessTokenRepository;
+    private volatile Snapshot snapshot = new Snapshot(new BloomFilter(MIN_CAPACITY, FALSE_POSITIVE_RATE), ConcurrentHashMap.newKeySet());
+    // revoked here while a rebuild was reading the table, re-applied to the new snapshot
+    private Set<String> revokedDuringRebuild;
+
+    public AccessTokenRevocations(RevokedAccessTokenRepository revokedAccessTokenRepository, MeterRegistry meterRegistry) {
+        this.revokedAccessTokenRepository = revokedAccessTokenRepository;
+        meterRegistry.gauge("auth.revoked.tokens", this, r -> r.snapshot.exact().size());
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        Snapshot s = snapshot;
+        return s.filter().mightContain(jti) && s.exact().contains(jti);
+    }
+
+    @Transactional
+    public void revoke(String jti, Date expiresAt) {
+        if (jti == null || expiresAt == null || expiresAt.before(new Date())) {
+            return;
+        }
+        revokedAccessTokenRepository.save(new RevokedAccessToken(jti,
+                LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault())));
+        synchronized (this) {
+            snapshot.add(jti);
+            if (revokedDuringRebuild != null) {
+                revokedDuringRebuild.add(jti);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.jwt-revocation-rebuild-ms:60000}", initialDelayString = "${app.jwt-revocation-rebuild-ms:60000}")
+    @Transactional
+    public void rebuild() {
+        synchronized (this) {
+            revokedDuringRebuild = ConcurrentHashMap.newKeySet();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        revokedAccessTokenRepository.deleteExpired(now);
+        List<String> jtis = revokedAccessTokenRepository.findActiveJtis(now);
+
+        // headroom so ids revoked before the next rebuild keep the false-positive rate near target
+        int capacity = Math.max(MIN_CAPACITY, jtis.size() * 2);
+        Snapshot next = new Snapshot(new BloomFilter(capacity, FALSE_POSITIVE_RATE), ConcurrentHashMap.newKeySet());
+        jtis.forEach(next::add);
+        synchronized (this) {
+            revokedDuringRebuild.forEach(next::add);
+            revokedDuringRebuild = null;
+            snapshot = next;
+        }
+        log.debug("Access-token revocation filter rebuilt with {} ids", jtis.size());
+    }
+
+    private record Snapshot(BloomFilter filter, Set<String> exact) {
+        void add(String jti) {
+            filter.add(jti);
+            exact.add(jti);
+        }
+    }
+}
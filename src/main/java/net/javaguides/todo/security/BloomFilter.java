@@ -0,0 +1,68 @@
+package net.javaguides.todo.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Fixed-size Bloom filter over strings: mightContain never returns a false negative, and
+// false positives stay near the target rate while no more than the expected count is added.
+// Bits live in an AtomicLongArray so adds can run concurrently with lookups.
+class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        int n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, m);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((bitCount + 63) / 64));
+    }
+
+    void add(String value) {
+        long hash = hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(String value) {
+        long hash = hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a over the UTF-8 bytes, then a murmur3 finalizer to spread the bits; split into two 32-bit hashes
+    private static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,27 @@
+package net.javaguides.todo.security;
+
+import lombok.AllArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+@Component
+@AllArgsConstructor
+public class CurrentUserResolver {
+
+    private final UserDetailsService userDetailsService;
+
+    // the principal the filter already built; only authentications from elsewhere fall back to a lookup
+    public UserPrincipal requireCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            throw new UsernameNotFoundException("User not found");
+        }
+        if (authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal;
+        }
+        return (UserPrincipal) userDetailsService.loadUserByUsername(authentication.getName());
+    }
+}
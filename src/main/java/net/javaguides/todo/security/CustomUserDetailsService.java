@@ -3,16 +3,10 @@ package net.javaguides.todo.security;
 import lombok.AllArgsConstructor;
 import net.javaguides.todo.entity.User;
 import net.javaguides.todo.repository.UserRepository;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Set;
-import java.util.stream.Collectors;
-
 
 @Service
 @AllArgsConstructor
@@ -20,20 +14,20 @@ public class CustomUserDetailsService implements UserDetailsService {
 
     private UserRepository userRepository;
 
+    private UserDetailsCache userDetailsCache;
+
     @Override
-    public UserDetails loadUserByUsername(String usernameOrEmail) throws UsernameNotFoundException {
+    public UserPrincipal loadUserByUsername(String usernameOrEmail) throws UsernameNotFoundException {
+        UserPrincipal cached = userDetailsCache.get(usernameOrEmail);
+        if (cached != null) {
+            return cached;
+        }
+
         User user=userRepository.findByUsernameOrEmail(usernameOrEmail,usernameOrEmail)//call userRepository instance
                 .orElseThrow(()->new UsernameNotFoundException("User not exists by Username or Email"));
 
-
-        Set<GrantedAuthority> authorities=user.getRoles().stream()
-                .map((role)->new SimpleGrantedAuthority(role.getName()))
-                .collect(Collectors.toSet());
-
-        return new org.springframework.security.core.userdetails.User(
-                usernameOrEmail,
-                user.getPassword(),
-                authorities
-        );
+        UserPrincipal principal = UserPrincipal.from(user);
+        userDetailsCache.put(principal, usernameOrEmail, user.getUsername(), user.getEmail());
+        return principal;
     }
 }
@@ -6,8 +6,6 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -21,14 +19,10 @@ import java.io.IOException;
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private JwtTokenProvider jwtTokenProvider;
+    private JwtAuthenticator jwtAuthenticator;
 
-    private UserDetailsService userDetailsService;
-    private UsernamePasswordAuthenticationToken authenticationToken;
-
-    public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider, UserDetailsService userDetailsService) {
-        this.jwtTokenProvider = jwtTokenProvider;
-        this.userDetailsService = userDetailsService;
+    public JwtAuthenticationFilter(JwtAuthenticator jwtAuthenticator) {
+        this.jwtAuthenticator = jwtAuthenticator;
     }
 
     @Override
@@ -37,18 +31,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         //Get JWT token from HTTP request
         String token = getTokenFromRequest(request);
 
-        //validate token
-        if (StringUtils.hasText(token) && jwtTokenProvider.validateToken(token)) {
-            //get username from token
-            String username = jwtTokenProvider.getUsername(token);
-
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-            UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
-                    userDetails,
-                    null,
-                    userDetails.getAuthorities()
-            );
+        if (StringUtils.hasText(token)) {
+            //the principal built here carries id / names / admin flag for the services (see CurrentUserResolver)
+            UsernamePasswordAuthenticationToken authenticationToken = jwtAuthenticator.authenticate(token);
 
             authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
@@ -65,6 +50,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return bearerToken.substring(7, bearerToken.length());
         }
 
+        //EventSource cannot set headers, so the SSE endpoints take the token as a query parameter
+        if (request.getRequestURI().endsWith("/events")) {
+            return request.getParameter("access_token");
+        }
+
         return null;
     }
 }
@@ -0,0 +1,77 @@
+package net.javaguides.todo.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+//Turns a bearer token into an Authentication carrying a UserPrincipal;
+//shared by the HTTP filter and the STOMP CONNECT interceptor so both transports authenticate the same way
+@Component
+public class JwtAuthenticator {
+
+    private JwtTokenProvider jwtTokenProvider;
+
+    private UserDetailsService userDetailsService;
+
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
+    private AccessTokenRevocations accessTokenRevocations;
+
+    //app.jwt-stateless=true trusts the uid/roles claims instead of loading the user on every request
+    private boolean stateless;
+
+    public JwtAuthenticator(JwtTokenProvider jwtTokenProvider, UserDetailsService userDetailsService,
+                            TokenRevocationRegistry tokenRevocationRegistry,
+                            AccessTokenRevocations accessTokenRevocations,
+                            @Value("${app.jwt-stateless:false}") boolean stateless) {
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.userDetailsService = userDetailsService;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
+        this.accessTokenRevocations = accessTokenRevocations;
+        this.stateless = stateless;
+    }
+
+    //validates the token and reads its claims in one parse (throws JwtException when invalid)
+    public UsernamePasswordAuthenticationToken authenticate(String token) {
+        Claims claims = jwtTokenProvider.parse(token);
+        if (accessTokenRevocations.isRevoked(claims.getId())) {
+            throw new JwtException("Token has been revoked");
+        }
+
+        UserDetails userDetails = stateless ? fromClaims(claims) : null;
+        if (userDetails == null) {
+            userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+        }
+
+        return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+    }
+
+    //null when the token predates the claims (or was revoked), which sends it down the user-lookup path
+    private UserDetails fromClaims(Claims claims) {
+        Long userId = claims.get(JwtTokenProvider.CLAIM_USER_ID, Long.class);
+        Object roles = claims.get(JwtTokenProvider.CLAIM_ROLES);
+        if (userId == null || !(roles instanceof Collection<?> roleNames)) {
+            return null;
+        }
+        if (tokenRevocationRegistry.isRevoked(userId, claims.getIssuedAt())) {
+            return null;
+        }
+
+        List<GrantedAuthority> authorities = roleNames.stream()
+                .map(r -> (GrantedAuthority) new SimpleGrantedAuthority(String.valueOf(r)))
+                .toList();
+        return new UserPrincipal(userId, claims.getSubject(),
+                claims.get(JwtTokenProvider.CLAIM_FIRST_NAME, String.class),
+                claims.get(JwtTokenProvider.CLAIM_LAST_NAME, String.class),
+                "", authorities);
+    }
+}
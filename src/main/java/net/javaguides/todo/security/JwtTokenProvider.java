@@ -1,5 +1,8 @@
 package net.javaguides.todo.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -7,23 +10,71 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtTokenProvider {
 
-    @Value("${app.jwt-secret}")
-    private String jwtSecret;
-
-    @Value("${app.jwt-expiration-milliseconds}")
-    private long jwtExpirationDate;
-
-
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_FIRST_NAME = "fn";
+    public static final String CLAIM_LAST_NAME = "ln";
+
+    private final long jwtExpirationDate;
+
+    //decoded once at startup; the built parser is immutable and thread-safe
+    private final Key key;
+    private final JwtParser parser;
+
+    //recently verified tokens keyed by SHA-256 of the token, each dropped at its own exp
+    private final Cache<String, Claims> verifiedTokens;
+
+    public JwtTokenProvider(@Value("${app.jwt-secret}") String jwtSecret,
+                            @Value("${app.jwt-expiration-milliseconds}") long jwtExpirationDate,
+                            @Value("${app.jwt-verified-cache-size:10000}") long verifiedCacheSize) {
+        this.jwtExpirationDate = jwtExpirationDate;
+        this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String hash, Claims claims, long currentTime) {
+                        Date exp = claims.getExpiration();
+                        if (exp == null) {
+                            return 0;
+                        }
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, exp.getTime() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String hash, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String hash, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
 
     //Generate JWT Token
+    //user id, names and role names ride along as claims so the stateless mode can authenticate without a user lookup;
+    //the jti lets a single token be revoked before its (short) exp, see AccessTokenRevocations
     public String generateToken(Authentication authentication){
-        String username=authentication.getName();
+        UserPrincipal principal = (UserPrincipal) authentication.getPrincipal();
+        String username=principal.getUsername();
 
         Date currentDate=new Date();
 
@@ -31,41 +82,50 @@ public class JwtTokenProvider {
 
         String token = Jwts.builder()
                 .setSubject(username)
-                .setIssuedAt(new Date())
+                .setId(UUID.randomUUID().toString())
+                .claim(CLAIM_USER_ID, principal.getId())
+                .claim(CLAIM_FIRST_NAME, principal.getFirstName())
+                .claim(CLAIM_LAST_NAME, principal.getLastName())
+                .claim(CLAIM_ROLES, principal.getRoleNames())
+                .setIssuedAt(currentDate)
                 .setExpiration(expireDate)
-                .signWith(key())
+                .signWith(key)
                 .compact();
 
         return token;
     }
 
-    private Key key(){
-        return Keys.hmacShaKeyFor(
-                Decoders.BASE64.decode(jwtSecret)
-        );
+    //Verify the signature/expiry once and return the claims (throws JwtException when invalid);
+    //a token seen before skips the HMAC and JSON work until it expires
+    public Claims parse(String token){
+        String hash = sha256(token);
+        Claims cached = verifiedTokens.getIfPresent(hash);
+        if (cached != null) {
+            return cached;
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        verifiedTokens.put(hash, claims);
+        return claims;
     }
 
     //Get username from JWT token
     public String getUsername(String token){
-        Claims claims=Jwts.parserBuilder()
-                .setSigningKey(key())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-
-        String username= claims.getSubject();
-
-        return username;
+        return parse(token).getSubject();
     }
 
     //Validate JWT Token
     public boolean validateToken(String token){
-        Jwts.parserBuilder()
-                .setSigningKey(key())
-                .build()
-                .parse(token);
-
+        parse(token);
         return true;
     }
 
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 }
@@ -0,0 +1,112 @@
+package net.javaguides.todo.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import net.javaguides.todo.exception.TodoAPIException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs BCrypt on its own CPU-sized pool instead of on request threads, so a login storm can only
+// use that many cores and the rest of the API keeps its threads. When the pool and its short queue
+// are full the call is refused with 503 right away rather than queueing without bound.
+// Bulk imports hash on a separate fork-join pool of the same size, so they cannot fill the login queue.
+// Metrics: executor.*{name=auth.password} (queued, active, completed) and auth.password.rejected.
+@Component
+public class PasswordHashing {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final ForkJoinPool bulkPool;
+    private final Counter rejected;
+    // a real hash of a random secret, for checks against accounts that do not exist
+    private final String dummyHash;
+
+    public PasswordHashing(PasswordEncoder passwordEncoder,
+                           @Value("${app.password-hashing.threads:0}") int threads,
+                           @Value("${app.password-hashing.queue-capacity:64}") int queueCapacity,
+                           MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        this.dummyHash = passwordEncoder.encode(UUID.randomUUID().toString());
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hashing-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.bulkPool = new ForkJoinPool(size);
+        this.rejected = Counter.builder("auth.password.rejected")
+                .description("Password hash/verify calls refused because the pool was saturated")
+                .register(meterRegistry);
+        new ExecutorServiceMetrics(executor, "auth.password", List.of()).bindTo(meterRegistry);
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    // the same BCrypt work as matches() with nothing to match, so an unknown username costs as long as a known one
+    public void matchesNothing(String rawPassword) {
+        run(() -> passwordEncoder.matches(rawPassword, dummyHash));
+    }
+
+    public String encode(String rawPassword) {
+        return run(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    // hashes in parallel, results in input order
+    public List<String> encodeAll(List<String> rawPasswords) {
+        try {
+            return bulkPool.submit(() -> rawPasswords.parallelStream().map(passwordEncoder::encode).toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TodoAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while hashing passwords.");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        bulkPool.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new TodoAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Too many sign-in attempts right now, please retry.");
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new TodoAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while checking the password.");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package net.javaguides.todo.security;
+
+import lombok.extern.slf4j.Slf4j;
+import net.javaguides.todo.entity.RefreshToken;
+import net.javaguides.todo.exception.TodoAPIException;
+import net.javaguides.todo.repository.RefreshTokenRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+// Issues and rotates opaque refresh tokens. Only the SHA-256 of a token is stored, so a database
+// leak does not hand out usable tokens. A token is good for one refresh: rotating revokes it and
+// issues its successor, and a revoked token coming back (a stolen copy racing the owner) revokes the family.
+@Slf4j
+@Component
+public class RefreshTokenStore {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final Duration lifetime;
+
+    public RefreshTokenStore(RefreshTokenRepository refreshTokenRepository,
+                             @Value("${app.jwt-refresh-expiration-milliseconds:604800000}") long lifetimeMillis) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.lifetime = Duration.ofMillis(lifetimeMillis);
+    }
+
+    public record Rotation(Long userId, String refreshToken) {
+    }
+
+    // a new family, at login
+    @Transactional
+    public String issue(Long userId) {
+        return create(userId, UUID.randomUUID().toString());
+    }
+
+    // noRollbackFor: a detected reuse must keep the family revocation it just wrote
+    @Transactional(noRollbackFor = TodoAPIException.class)
+    public Rotation rotate(String rawToken) {
+        RefreshToken current = find(rawToken);
+        LocalDateTime now = LocalDateTime.now();
+
+        if (current.getRevokedAt() != null || refreshTokenRepository.revoke(current.getId(), now) == 0) {
+            int revoked = refreshTokenRepository.revokeFamily(current.getFamilyId(), now);
+            log.warn("Refresh token reuse for user {}; revoked {} token(s) of its family", current.getUserId(), revoked);
+            throw new TodoAPIException(HttpStatus.UNAUTHORIZED, "Refresh token has already been used, please log in again.");
+        }
+        if (current.getExpiresAt().isBefore(now)) {
+            throw new TodoAPIException(HttpStatus.UNAUTHORIZED, "Refresh token has expired, please log in again.");
+        }
+        return new Rotation(current.getUserId(), create(current.getUserId(), current.getFamilyId()));
+    }
+
+    // logout: the token and every rotation of it
+    @Transactional
+    public void revokeFamily(String rawToken) {
+        refreshTokenRepository.findByTokenHash(hash(rawToken))
+                .ifPresent(t -> refreshTokenRepository.revokeFamily(t.getFamilyId(), LocalDateTime.now()));
+    }
+
+    @Scheduled(cron = "${app.refresh-token-purge-cron:0 15 4 * * *}")
+    @Transactional
+    public void purgeExpired() {
+        int purged = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (purged > 0) {
+            log.info("Purged {} expired refresh token(s)", purged);
+        }
+    }
+
+    private RefreshToken find(String rawToken) {
+        if (rawToken == null || rawToken.isBlank()) {
+            throw new TodoAPIException(HttpStatus.UNAUTHORIZED, "Refresh token is required.");
+        }
+        return refreshTokenRepository.findByTokenHash(hash(rawToken))
+                .orElseThrow(() -> new TodoAPIException(HttpStatus.UNAUTHORIZED, "Invalid refresh token."));
+    }
+
+    private String create(Long userId, String familyId) {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String raw = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenRepository.save(new RefreshToken(null, hash(raw), userId, familyId,
+                LocalDateTime.now().plus(lifetime), null));
+        return raw;
+    }
+
+    private static String hash(String rawToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(rawToken.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
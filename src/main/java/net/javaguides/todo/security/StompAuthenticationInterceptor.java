@@ -0,0 +1,74 @@
+package net.javaguides.todo.security;
+
+import io.jsonwebtoken.JwtException;
+import lombok.AllArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+// Authenticates STOMP sessions with the same JWT the REST API takes. The token is checked once,
+// on CONNECT; later frames carry the session's user, which is put in the SecurityContext while
+// the frame is handled so @PreAuthorize and CurrentUserResolver work as they do over HTTP.
+@Component
+@AllArgsConstructor
+public class StompAuthenticationInterceptor implements ExecutorChannelInterceptor {
+
+    private JwtAuthenticator jwtAuthenticator;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+            String token = getToken(accessor);
+            if (!StringUtils.hasText(token)) {
+                throw new MessagingException("Missing bearer token");
+            }
+            try {
+                accessor.setUser(jwtAuthenticator.authenticate(token));
+            } catch (JwtException | IllegalArgumentException | UsernameNotFoundException e) {
+                throw new MessagingException("Invalid bearer token");
+            }
+        } else if ((StompCommand.SEND.equals(accessor.getCommand()) || StompCommand.SUBSCRIBE.equals(accessor.getCommand()))
+                && !(accessor.getUser() instanceof Authentication)) {
+            throw new MessagingException("Not authenticated");
+        }
+        return message;
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && accessor.getUser() instanceof UsernamePasswordAuthenticationToken authentication) {
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        SecurityContextHolder.clearContext();
+    }
+
+    private String getToken(StompHeaderAccessor accessor) {
+        String bearerToken = accessor.getFirstNativeHeader("Authorization");
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer")) {
+            return bearerToken.substring(7);
+        }
+        return accessor.getFirstNativeHeader("access_token");
+    }
+}
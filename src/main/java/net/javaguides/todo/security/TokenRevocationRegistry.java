@@ -0,0 +1,41 @@
+package net.javaguides.todo.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+
+// In-memory "tokens issued before X are no longer trusted" marks per user id, used by the
+// stateless JWT mode instead of reloading the user. A mark only has to outlive the longest
+// token that could predate it, so entries expire after the access-token lifetime.
+@Component
+public class TokenRevocationRegistry {
+
+    private final Cache<Long, Instant> notBefore;
+
+    public TokenRevocationRegistry(@Value("${app.jwt-expiration-milliseconds}") long jwtExpirationMillis) {
+        this.notBefore = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(jwtExpirationMillis))
+                .build();
+    }
+
+    // call when a user's roles or password change; their older tokens are re-checked against the database
+    public void revokeTokensOf(Long userId) {
+        if (userId != null) {
+            notBefore.put(userId, Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        }
+    }
+
+    public boolean isRevoked(Long userId, Date issuedAt) {
+        if (userId == null) {
+            return false;
+        }
+        Instant mark = notBefore.getIfPresent(userId);
+        return mark != null && (issuedAt == null || issuedAt.toInstant().isBefore(mark));
+    }
+}
@@ -0,0 +1,82 @@
+package net.javaguides.todo.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// UserPrincipals by login name, so the JWT filter and login skip the user + roles query on a hit.
+// One principal sits under its username and its email (and whatever spelling it was looked up by).
+// Entries expire after the TTL and are evicted by user id when the user changes (UserSecurityListener);
+// hits and misses are published as cache.gets{cache=user.details}.
+@Component
+public class UserDetailsCache {
+
+    private final Cache<String, UserPrincipal> principals;
+
+    // the keys each user is cached under, so invalidate() does not scan the cache
+    private final Map<Long, Set<String>> keysByUser = new ConcurrentHashMap<>();
+
+    public UserDetailsCache(@Value("${app.user-details-cache.max-size:10000}") long maxSize,
+                            @Value("${app.user-details-cache.ttl-seconds:300}") long ttlSeconds,
+                            MeterRegistry meterRegistry) {
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                // runs inside the entry's compute, so it cannot race a put of the same key
+                .evictionListener((String key, UserPrincipal principal, RemovalCause cause) -> forget(principal.getId(), key))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "user.details");
+    }
+
+    public UserPrincipal get(String usernameOrEmail) {
+        return principals.getIfPresent(usernameOrEmail);
+    }
+
+    public void put(UserPrincipal principal, String... keys) {
+        for (String key : keys) {
+            if (key != null) {
+                principals.put(key, principal);
+                keysByUser.computeIfAbsent(principal.getId(), id -> ConcurrentHashMap.newKeySet()).add(key);
+            }
+        }
+    }
+
+    // every key of the user, now and again after commit so a concurrent load cannot re-cache the old row
+    public void invalidate(Long userId) {
+        invalidateNow(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateNow(userId);
+                }
+            });
+        }
+    }
+
+    private void invalidateNow(Long userId) {
+        Set<String> keys = keysByUser.remove(userId);
+        if (keys != null) {
+            principals.invalidateAll(keys);
+        }
+    }
+
+    private void forget(Long userId, String key) {
+        keysByUser.computeIfPresent(userId, (id, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+}
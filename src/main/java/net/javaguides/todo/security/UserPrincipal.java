@@ -0,0 +1,56 @@
+package net.javaguides.todo.security;
+
+import lombok.Getter;
+import net.javaguides.todo.entity.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Authenticated user as resolved once per request by JwtAuthenticationFilter,
+// carrying what the services need so they don't look the user up again.
+@Getter
+public class UserPrincipal implements UserDetails {
+
+    public static final String ROLE_ADMIN = "ROLE_ADMIN";
+
+    private final Long id;
+    private final String username;
+    private final String firstName;
+    private final String lastName;
+    private final String password;
+    private final Set<GrantedAuthority> authorities;
+    private final boolean admin;
+
+    public UserPrincipal(Long id, String username, String firstName, String lastName, String password,
+                         Collection<? extends GrantedAuthority> authorities) {
+        this.id = id;
+        this.username = username;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.password = password;
+        this.authorities = Set.copyOf(authorities);
+        this.admin = this.authorities.stream().anyMatch(a -> ROLE_ADMIN.equals(a.getAuthority()));
+    }
+
+    public static UserPrincipal from(User user) {
+        Set<GrantedAuthority> authorities = user.getRoles().stream()
+                .map(role -> new SimpleGrantedAuthority(role.getName()))
+                .collect(Collectors.toSet());
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getFirstName(), user.getLastName(),
+                user.getPassword(), authorities);
+    }
+
+    public List<String> getRoleNames() {
+        return authorities.stream().map(GrantedAuthority::getAuthority).sorted().toList();
+    }
+
+    // first name, or the username when no first name is set
+    public String getDisplayName() {
+        return (firstName != null && !firstName.isEmpty()) ? firstName : username;
+    }
+}
@@ -0,0 +1,30 @@
+package net.javaguides.todo.security;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import net.javaguides.todo.entity.User;
+
+// JPA entity listener on User: any update (password, names, ...) drops the cached principal and
+// marks the user's older tokens, whose claims may now be stale, for a database re-check.
+// Changes made only to the roles collection do not fire @PostUpdate; code that edits roles
+// calls UserDetailsCache.invalidate and TokenRevocationRegistry.revokeTokensOf itself.
+// Hibernate creates this as a Spring bean while the EntityManagerFactory is being built,
+// so it must not depend on repositories.
+public class UserSecurityListener {
+
+    private final UserDetailsCache userDetailsCache;
+
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+
+    public UserSecurityListener(UserDetailsCache userDetailsCache, TokenRevocationRegistry tokenRevocationRegistry) {
+        this.userDetailsCache = userDetailsCache;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void changed(User user) {
+        userDetailsCache.invalidate(user.getId());
+        tokenRevocationRegistry.revokeTokensOf(user.getId());
+    }
+}
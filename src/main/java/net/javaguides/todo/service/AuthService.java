@@ -1,10 +1,16 @@
 package net.javaguides.todo.service;
 
+import net.javaguides.todo.dto.BatchRegisterResponse;
 import net.javaguides.todo.dto.JwtAuthResponse;
 import net.javaguides.todo.dto.LoginDto;
 import net.javaguides.todo.dto.RegisterDto;
 
+import java.util.List;
+
 public interface AuthService {
     String register(RegisterDto registerDto);
+    BatchRegisterResponse registerBatch(List<RegisterDto> registerDtos);
     JwtAuthResponse login(LoginDto loginDto);
+    JwtAuthResponse refresh(String refreshToken);
+    void logout(String refreshToken, String accessToken);
 }
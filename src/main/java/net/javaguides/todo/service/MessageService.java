@@ -6,6 +6,8 @@ import java.util.List;
 
 public interface MessageService {
     List<MessageDto> listMessagesByTodo(Long todoId);
+    List<MessageDto> listMessagesAfter(Long todoId, Long afterId, Integer limit);
+    List<MessageDto> listMessagesBefore(Long todoId, Long beforeId, Integer limit);
     MessageDto addMessage(Long todoId, String content);
     void deleteMessage(Long todoId, Long messageId);
 }
@@ -11,8 +11,11 @@ public interface TodoItemService {
     Map<String, Object> summary(Long todoId); // { total, completed, progress }
 
     TodoItemDto addItem(Long todoId, String title);
+    List<TodoItemDto> addItems(Long todoId, List<String> titles);
     void deleteItem(Long todoId, Long itemId);
 
     TodoItemDto completeItem(Long itemId);
     TodoItemDto uncompleteItem(Long itemId);
+    List<TodoItemDto> completeItems(Long todoId, List<Long> itemIds);
+    List<TodoItemDto> completeRemainingItems(Long todoId);
 }
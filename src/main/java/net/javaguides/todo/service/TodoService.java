@@ -5,12 +5,16 @@ import net.javaguides.todo.dto.TodoDto;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface TodoService {
 
     TodoDto addTodo(TodoDto todoDto);
+    List<TodoDto> addTodos(List<TodoDto> todoDtos);
     TodoDto getTodo(Long id);
     List<TodoDto> getAllTodos();
+    List<TodoDto> getTodosAfter(Long afterId, Integer limit);
+    void streamAllTodos(Consumer<TodoDto> sink);
     TodoDto updateTodo(TodoDto todoDto,Long id);
     void deleteTodo(Long id);
     TodoDto completeTodo(Long id);
@@ -1,6 +1,9 @@
 package net.javaguides.todo.service.impl;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import lombok.AllArgsConstructor;
+import net.javaguides.todo.dto.BatchRegisterResponse;
 import net.javaguides.todo.dto.JwtAuthResponse;
 import net.javaguides.todo.dto.LoginDto;
 import net.javaguides.todo.dto.RegisterDto;
@@ -9,111 +12,252 @@ import net.javaguides.todo.entity.User;
 import net.javaguides.todo.exception.TodoAPIException;
 import net.javaguides.todo.repository.RoleRepository;
 import net.javaguides.todo.repository.UserRepository;
+import net.javaguides.todo.security.AccessTokenRevocations;
+import net.javaguides.todo.security.CustomUserDetailsService;
 import net.javaguides.todo.security.JwtTokenProvider;
+import net.javaguides.todo.security.PasswordHashing;
+import net.javaguides.todo.security.RefreshTokenStore;
+import net.javaguides.todo.security.UserPrincipal;
 import net.javaguides.todo.service.AuthService;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Optional;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 @Service
 @AllArgsConstructor
 public class AuthServiceImpl implements AuthService {
 
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[\\w-\\.]+@([\\w-]+\\.)+[\\w-]{2,4}$");
+    private static final int MAX_BATCH_SIZE = 5000;
+
     private UserRepository userRepository;
     private RoleRepository roleRepository;
-    private PasswordEncoder passwordEncoder;
-    private AuthenticationManager authenticationManager;
+    private PasswordHashing passwordHashing;
+    private CustomUserDetailsService userDetailsService;
+    private RefreshTokenStore refreshTokenStore;
+    private AccessTokenRevocations accessTokenRevocations;
     private JwtTokenProvider jwtTokenProvider;
+    private TransactionTemplate transactionTemplate;
 
     @Override
     public String register(RegisterDto registerDto) {
 
-        //check username is already exists in database
-        if(userRepository.existsByUsername(registerDto.getUsername())){
-            throw new TodoAPIException(HttpStatus.BAD_REQUEST,"Username is already exists!");
+        String problem = validate(registerDto);
+        if (problem != null) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST, problem);
         }
 
-        //check email is already exists in database
-        if(userRepository.existsByEmail((registerDto.getEmail()))){
-            throw new TodoAPIException(HttpStatus.BAD_REQUEST,"Email is already exists");
+        //check username / email already exist in database, one query for both
+        for (Object[] taken : userRepository.findTaken(List.of(registerDto.getUsername()), List.of(registerDto.getEmail()))) {
+            if (registerDto.getUsername().equalsIgnoreCase((String) taken[0])) {
+                throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Username is already exists!");
+            }
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Email is already exists");
         }
 
+        // hashed before the transaction so no connection is held during BCrypt
+        User user = newUser(registerDto, passwordHashing.encode(registerDto.getPassword()));
+        transactionTemplate.executeWithoutResult(status -> saveWithUserRole(List.of(user)));
+
+        return "User Registered Successfully!";
+    }
+
+    // Validates every row, drops duplicates (within the batch and against one IN query),
+    // hashes the passwords in parallel and inserts the rest in one JDBC-batched transaction.
+    // Invalid rows are reported, not fatal; a clash with a concurrent registration fails the whole batch.
+    @Override
+    public BatchRegisterResponse registerBatch(List<RegisterDto> registerDtos) {
+        if (registerDtos == null || registerDtos.isEmpty()) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "No users to register");
+        }
+        if (registerDtos.size() > MAX_BATCH_SIZE) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "At most " + MAX_BATCH_SIZE + " users per batch");
+        }
+
+        List<String> rejected = new ArrayList<>();
+        Map<Integer, RegisterDto> valid = new LinkedHashMap<>();
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (int i = 0; i < registerDtos.size(); i++) {
+            RegisterDto dto = registerDtos.get(i);
+            String problem = dto == null ? "Missing required field" : validate(dto);
+            if (problem == null && !usernames.add(dto.getUsername().toLowerCase())) {
+                problem = "Duplicate username in batch";
+            }
+            if (problem == null && !emails.add(dto.getEmail().toLowerCase())) {
+                problem = "Duplicate email in batch";
+            }
+            if (problem != null) {
+                rejected.add(rejection(i, dto, problem));
+            } else {
+                valid.put(i, dto);
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            Set<String> takenUsernames = new HashSet<>();
+            Set<String> takenEmails = new HashSet<>();
+            for (Object[] taken : userRepository.findTaken(
+                    valid.values().stream().map(RegisterDto::getUsername).toList(),
+                    valid.values().stream().map(RegisterDto::getEmail).toList())) {
+                takenUsernames.add(((String) taken[0]).toLowerCase());
+                takenEmails.add(((String) taken[1]).toLowerCase());
+            }
+            valid.entrySet().removeIf(e -> {
+                RegisterDto dto = e.getValue();
+                if (takenUsernames.contains(dto.getUsername().toLowerCase())) {
+                    rejected.add(rejection(e.getKey(), dto, "Username is already exists!"));
+                    return true;
+                }
+                if (takenEmails.contains(dto.getEmail().toLowerCase())) {
+                    rejected.add(rejection(e.getKey(), dto, "Email is already exists"));
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        List<RegisterDto> accepted = new ArrayList<>(valid.values());
+        List<String> hashes = passwordHashing.encodeAll(accepted.stream().map(RegisterDto::getPassword).toList());
+        List<User> users = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            users.add(newUser(accepted.get(i), hashes.get(i)));
+        }
+
+        if (!users.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> saveWithUserRole(users));
+            } catch (DataIntegrityViolationException ex) {
+                throw new TodoAPIException(HttpStatus.CONFLICT,
+                        "Some usernames or emails were taken during the import; nothing was saved, please retry.");
+            }
+        }
+        return new BatchRegisterResponse(users.size(), rejected);
+    }
+
+    // null when the row is acceptable
+    private static String validate(RegisterDto registerDto) {
+        if (registerDto.getUsername() == null || registerDto.getUsername().isBlank()
+                || registerDto.getEmail() == null || registerDto.getPassword() == null
+                || registerDto.getFirstName() == null || registerDto.getLastName() == null) {
+            return "Missing required field";
+        }
 
         // Validate email format
-        if (!registerDto.getEmail().matches("^[\\w-\\.]+@([\\w-]+\\.)+[\\w-]{2,4}$")) {
-            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Invalid email format");
+        if (!EMAIL_PATTERN.matcher(registerDto.getEmail()).matches()) {
+            return "Invalid email format";
         }
 
         // Validate password length
         if (registerDto.getPassword().length() < 8) {
-            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Password must be at least 8 characters");
+            return "Password must be at least 8 characters";
         }
+        return null;
+    }
+
+    private static String rejection(int index, RegisterDto dto, String problem) {
+        return "row " + (index + 1) + " (" + (dto != null ? dto.getUsername() : null) + "): " + problem;
+    }
 
+    private static User newUser(RegisterDto registerDto, String passwordHash) {
         User user = new User();
         user.setFirstName(registerDto.getFirstName());
         user.setLastName(registerDto.getLastName());
         user.setUsername(registerDto.getUsername());
         user.setEmail(registerDto.getEmail());
-        user.setPassword(passwordEncoder.encode(registerDto.getPassword()));
-
-        Set<Role> roles=new HashSet<>();
-        Role userRole=roleRepository.findByName("ROLE_USER");
-        roles.add(userRole);
-
-        user.setRoles(roles);
-
-        userRepository.save(user);
+        user.setPassword(passwordHash);
+        return user;
+    }
 
-        return "User Registered Successfully!";
+    // role looked up in the same transaction, so it is still managed when User.roles cascades on save
+    private void saveWithUserRole(List<User> users) {
+        Role userRole = roleRepository.findByName("ROLE_USER");
+        for (User user : users) {
+            Set<Role> roles = new HashSet<>();
+            roles.add(userRole);
+            user.setRoles(roles);
+        }
+        userRepository.saveAll(users);
     }
 
     @Override
     public JwtAuthResponse login(LoginDto loginDto) {
 
-        // 查帳號是否存在
-        Optional<User> userOptional = userRepository.findByUsernameOrEmail(
-                loginDto.getUsernameOrEmail(),
-                loginDto.getUsernameOrEmail()
-        );
-        if (userOptional.isEmpty()) {
+        // 查帳號是否存在; one (usually cached) lookup serves the password check and the response fields
+        UserPrincipal principal;
+        try {
+            principal = userDetailsService.loadUserByUsername(loginDto.getUsernameOrEmail());
+        } catch (UsernameNotFoundException ex) {
+            // pay for a BCrypt check anyway, or the response time would tell which usernames exist
+            if (loginDto.getPassword() != null) {
+                passwordHashing.matchesNothing(loginDto.getPassword());
+            }
             throw new TodoAPIException(HttpStatus.UNAUTHORIZED, "帳號或密碼錯誤");
         }
 
-        Authentication authentication;
-        try {
-            authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(
-                            loginDto.getUsernameOrEmail(),
-                            loginDto.getPassword()
-                    )
-            );
-        } catch (BadCredentialsException ex) {
+        // BCrypt on the bounded hashing pool (503 when saturated) instead of AuthenticationManager,
+        // which would load the user a second time
+        if (loginDto.getPassword() == null
+                || !passwordHashing.matches(loginDto.getPassword(), principal.getPassword())) {
             throw new TodoAPIException(HttpStatus.UNAUTHORIZED, "帳號或密碼錯誤");
         }
 
+        return authResponse(principal, refreshTokenStore.issue(principal.getId()));
+    }
+
+    // rotates the refresh token and issues a fresh short-lived access token
+    @Override
+    public JwtAuthResponse refresh(String refreshToken) {
+        RefreshTokenStore.Rotation rotation = refreshTokenStore.rotate(refreshToken);
+        User user = userRepository.findById(rotation.userId())
+                .orElseThrow(() -> new TodoAPIException(HttpStatus.UNAUTHORIZED, "Invalid refresh token."));
+        return authResponse(UserPrincipal.from(user), rotation.refreshToken());
+    }
+
+    // revokes the refresh token's family and, when one is given, the current access token
+    @Override
+    public void logout(String refreshToken, String accessToken) {
+        if (refreshToken != null && !refreshToken.isBlank()) {
+            refreshTokenStore.revokeFamily(refreshToken);
+        }
+        if (accessToken != null && !accessToken.isBlank()) {
+            try {
+                Claims claims = jwtTokenProvider.parse(accessToken);
+                accessTokenRevocations.revoke(claims.getId(), claims.getExpiration());
+            } catch (JwtException | IllegalArgumentException ex) {
+                // already invalid, nothing to revoke
+            }
+        }
+    }
+
+    private JwtAuthResponse authResponse(UserPrincipal principal, String refreshToken) {
+        Authentication authentication = new UsernamePasswordAuthenticationToken(
+                principal, null, principal.getAuthorities());
+
         SecurityContextHolder.getContext().setAuthentication(authentication);
         String token = jwtTokenProvider.generateToken(authentication);
 
         JwtAuthResponse jwtAuthResponse = new JwtAuthResponse();
         jwtAuthResponse.setAccessToken(token);
-        if (userOptional.isPresent()) {
-            User loggedInUser = userOptional.get();
-            jwtAuthResponse.setUserId(loggedInUser.getId());
-            jwtAuthResponse.setFirstName(loggedInUser.getFirstName());
-            jwtAuthResponse.setLastName(loggedInUser.getLastName());
+        jwtAuthResponse.setRefreshToken(refreshToken);
+        jwtAuthResponse.setUserId(principal.getId());
+        jwtAuthResponse.setFirstName(principal.getFirstName());
+        jwtAuthResponse.setLastName(principal.getLastName());
 
-            Optional<Role> optionalRole = loggedInUser.getRoles().stream().findFirst();
-            optionalRole.ifPresent(role -> jwtAuthResponse.setRole(role.getName()));
-        }
+        principal.getRoleNames().stream().findFirst().ifPresent(jwtAuthResponse::setRole);
 
         return jwtAuthResponse;
     }
@@ -1,42 +1,91 @@
 package net.javaguides.todo.service.impl;
 
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.javaguides.todo.cache.TodoCache;
 import net.javaguides.todo.dto.MessageDto;
 import net.javaguides.todo.entity.Message;
 import net.javaguides.todo.entity.Todo;
-import net.javaguides.todo.entity.User;
+import net.javaguides.todo.event.TodoChangeEvent;
 import net.javaguides.todo.exception.ResourceNotFoundException;
 import net.javaguides.todo.exception.TodoAPIException;
 import net.javaguides.todo.repository.MessageRepository;
 import net.javaguides.todo.repository.TodoRepository;
 import net.javaguides.todo.repository.UserRepository;
+import net.javaguides.todo.security.CurrentUserResolver;
+import net.javaguides.todo.security.UserPrincipal;
 import net.javaguides.todo.service.MessageService;
-import net.javaguides.todo.utils.SecurityUtil;
+import net.javaguides.todo.writebehind.MessageWriteBehind;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @AllArgsConstructor
 public class MessageServiceImpl implements MessageService {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final long WRITE_BEHIND_ACK_TIMEOUT_SECONDS = 10;
+
     private MessageRepository messageRepository;
     private TodoRepository todoRepository;
     private UserRepository userRepository;
+    private CurrentUserResolver currentUserResolver;
+    private ApplicationEventPublisher eventPublisher;
+    private TodoCache todoCache;
+    private MessageWriteBehind messageWriteBehind;
 
+    // existence from TodoCache, so a warm thread listing is the single projection query
     @Override
     public List<MessageDto> listMessagesByTodo(Long todoId) {
-        todoRepository.findById(todoId)
-                .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id: " + todoId));
+        todoCache.getTodo(todoId);
+
+        return messageRepository.findRowsByTodo(todoId)
+                .stream()
+                .map(r -> toDto(todoId, r))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<MessageDto> listMessagesAfter(Long todoId, Long afterId, Integer limit) {
+        todoCache.getTodo(todoId);
+
+        return messageRepository.findRowsAfter(todoId, afterId, pageOf(limit))
+                .stream()
+                .map(r -> toDto(todoId, r))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<MessageDto> listMessagesBefore(Long todoId, Long beforeId, Integer limit) {
+        todoCache.getTodo(todoId);
 
-        return messageRepository.findByTodo_IdOrderByCreatedAtAsc(todoId)
+        // fetched newest first so the limit keeps the latest ones, returned oldest first like the other lists
+        List<MessageDto> page = messageRepository.findRowsBefore(todoId,
+                        beforeId != null ? beforeId : Long.MAX_VALUE, pageOf(limit))
                 .stream()
-                .map(this::toDto)
+                .map(r -> toDto(todoId, r))
                 .collect(Collectors.toList());
+        Collections.reverse(page);
+        return page;
+    }
+
+    private static Limit pageOf(Integer limit) {
+        return Limit.of((limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE));
     }
 
     public MessageDto addMessage(Long todoId, String content) {
@@ -44,20 +93,60 @@ public class MessageServiceImpl implements MessageService {
             throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Message content cannot be empty.");
         }
 
+        if (messageWriteBehind.isEnabled()) {
+            return addMessageWriteBehind(todoId, content);
+        }
+
         Todo todo = todoRepository.findById(todoId)
                 .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id: " + todoId));
 
-        String username = SecurityUtil.getCurrentUsername();
-        User user = userRepository.findByUsernameOrEmail(username, username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        UserPrincipal me = currentUserResolver.requireCurrentUser();
 
         Message m = new Message();
         m.setTodo(todo);
-        m.setUser(user);
+        m.setUser(userRepository.getReferenceById(me.getId()));
         m.setContent(content.trim());
         Message saved = messageRepository.save(m);
 
-        return toDto(saved);
+        // author fields from the principal, so the user reference stays uninitialized
+        MessageDto dto = toDto(saved, me.getId(), me.getUsername(), me.getFirstName(), me.getLastName());
+        eventPublisher.publishEvent(new TodoChangeEvent(todoId, TodoChangeEvent.MESSAGE_ADDED, dto));
+        return dto;
+    }
+
+    // validated here without touching the pool (todo from the cache, author from the principal),
+    // then queued; the request thread holds no connection while it waits for the batch to commit
+    private MessageDto addMessageWriteBehind(Long todoId, String content) {
+        todoCache.getTodo(todoId);
+        UserPrincipal me = currentUserResolver.requireCurrentUser();
+
+        CompletableFuture<MessageDto> saved = messageWriteBehind.submit(todoId, me.getId(), content.trim())
+                .thenApply(m -> toDto(m, me.getId(), me.getUsername(), me.getFirstName(), me.getLastName()));
+        // published on the writer thread once the batch commits, so a message whose ack timed out below
+        // still reaches SSE and STOMP subscribers
+        saved.thenAccept(dto -> {
+            try {
+                eventPublisher.publishEvent(new TodoChangeEvent(todoId, TodoChangeEvent.MESSAGE_ADDED, dto));
+            } catch (RuntimeException e) {
+                log.warn("Could not publish message {} of todo {}", dto.getId(), todoId, e);
+            }
+        });
+
+        try {
+            return saved.get(WRITE_BEHIND_ACK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TodoAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while saving the message.");
+        } catch (TimeoutException e) {
+            throw new TodoAPIException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Message not confirmed in time; it may still be saved and pushed to the thread.");
+        } catch (ExecutionException e) {
+            if (!todoRepository.existsById(todoId)) {
+                throw new ResourceNotFoundException("Todo not found with id: " + todoId);
+            }
+            log.warn("Write-behind insert failed for todo {}", todoId, e.getCause());
+            throw new TodoAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Could not save the message, please retry.");
+        }
     }
 
     @Override
@@ -68,33 +157,43 @@ public class MessageServiceImpl implements MessageService {
         Message m = messageRepository.findById(messageId)
                 .orElseThrow(() -> new ResourceNotFoundException("Message not found with id: " + messageId));
 
-        String requester = SecurityUtil.getCurrentUsername();
-        User me = userRepository.findByUsernameOrEmail(requester, requester)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        UserPrincipal me = currentUserResolver.requireCurrentUser();
 
-        boolean isAdmin = me.getRoles().stream().anyMatch(r -> "ROLE_ADMIN".equals(r.getName()));
-        String ownerUsername = m.getUser().getUsername();
-
-        if (!isAdmin && !Objects.equals(ownerUsername, requester)) {
+        if (!me.isAdmin() && !Objects.equals(m.getUser().getId(), me.getId())) {
             throw new TodoAPIException(HttpStatus.FORBIDDEN, "Only author or admin can delete the message.");
         }
 
         messageRepository.delete(m);
+        eventPublisher.publishEvent(new TodoChangeEvent(todoId, TodoChangeEvent.MESSAGE_DELETED,
+                Map.of("id", messageId, "todoId", todoId)));
     }
 
-    private MessageDto toDto(Message m) {
-        User u = m.getUser();
-        String full = ((u.getLastName() != null ? u.getLastName() : "") +
-                (u.getFirstName() != null ? u.getFirstName() : "")).trim();
-        if (full.isEmpty()) full = u.getUsername();
+    // row from MessageRepository.MESSAGE_ROW_SELECT
+    private MessageDto toDto(Long todoId, Object[] r) {
+        Long userId = (Long) r[1];
+        String username = (String) r[2];
+        return new MessageDto((Long) r[0], todoId, userId, username,
+                fullName(username, (String) r[3], (String) r[4]),
+                (String) r[5], (LocalDateTime) r[6]);
+    }
+
+    private MessageDto toDto(Message m, Long userId, String username, String firstName, String lastName) {
         MessageDto dto = new MessageDto();
         dto.setId(m.getId());
         dto.setTodoId(m.getTodo().getId());
-        dto.setUserId(u.getId());
-        dto.setUsername(u.getUsername());
-        dto.setAuthorFullName(full);
+        dto.setUserId(userId);
+        dto.setUsername(username);
+        dto.setAuthorFullName(fullName(username, firstName, lastName));
         dto.setContent(m.getContent());
         dto.setCreatedAt(m.getCreatedAt());
         return dto;
     }
+
+    // "lastName + firstName", or the username when both are blank; built from the row in hand, never cached,
+    // so a rename shows up on the next read
+    private static String fullName(String username, String firstName, String lastName) {
+        String full = ((lastName != null ? lastName : "") +
+                (firstName != null ? firstName : "")).trim();
+        return full.isEmpty() ? username : full;
+    }
 }
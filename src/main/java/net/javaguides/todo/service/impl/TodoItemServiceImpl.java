@@ -1,22 +1,32 @@
 package net.javaguides.todo.service.impl;
 
 import lombok.AllArgsConstructor;
+import net.javaguides.todo.cache.TodoCache;
+import net.javaguides.todo.dto.TodoDto;
 import net.javaguides.todo.dto.TodoItemDto;
 import net.javaguides.todo.entity.Todo;
 import net.javaguides.todo.entity.TodoItem;
 import net.javaguides.todo.entity.User;
+import net.javaguides.todo.event.ItemCompletionChangedEvent;
+import net.javaguides.todo.event.TodoChangeEvent;
+import net.javaguides.todo.event.TodoFinisherChangedEvent;
 import net.javaguides.todo.exception.ResourceNotFoundException;
 import net.javaguides.todo.exception.TodoAPIException;
 import net.javaguides.todo.repository.TodoItemRepository;
 import net.javaguides.todo.repository.TodoRepository;
 import net.javaguides.todo.repository.UserRepository;
+import net.javaguides.todo.security.CurrentUserResolver;
+import net.javaguides.todo.security.UserPrincipal;
 import net.javaguides.todo.service.TodoItemService;
-import net.javaguides.todo.utils.SecurityUtil;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,21 +37,31 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 public class TodoItemServiceImpl implements TodoItemService {
 
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final TodoItemRepository todoItemRepository;
     private final TodoRepository todoRepository;
     private final UserRepository userRepository;
+    private final TodoCache todoCache;
+    private final CurrentUserResolver currentUserResolver;
+    private final ApplicationEventPublisher eventPublisher;
+
     @Override
     public List<TodoItemDto> listByTodo(Long todoId) {
-        todoRepository.findById(todoId)
-                .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id: " + todoId));
-        return todoItemRepository.findByTodo_IdOrderByIdAsc(todoId)
-                .stream().map(this::toDto).collect(Collectors.toList());
+        return todoCache.getItems(todoId, id -> {
+            if (!todoRepository.existsById(id)) {
+                throw new ResourceNotFoundException("Todo not found with id: " + id);
+            }
+            return todoItemRepository.findByTodo_IdOrderByIdAsc(id)
+                    .stream().map(this::toDto).collect(Collectors.toList());
+        });
     }
 
     @Override
     public Map<String, Object> summary(Long todoId) {
-        long total = todoItemRepository.countByTodo_Id(todoId);
-        long completed = todoItemRepository.countByTodo_IdAndCompletedTrue(todoId);
+        TodoDto todo = todoCache.getTodo(todoId);
+        long total = todo.getItemsTotal();
+        long completed = todo.getItemsCompleted();
         double progress = (total == 0) ? 0.0 : (completed * 1.0 / total);
 
         Map<String, Object> m = new LinkedHashMap<>();
@@ -52,6 +72,7 @@ public class TodoItemServiceImpl implements TodoItemService {
     }
 
     @Override
+    @Transactional
     public TodoItemDto addItem(Long todoId, String title) {
         if (title == null || title.trim().isEmpty()) {
             throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Item title cannot be empty.");
@@ -66,30 +87,82 @@ public class TodoItemServiceImpl implements TodoItemService {
         it.setTodo(todo);
         it.setTitle(title.trim());
         TodoItem saved = todoItemRepository.save(it);
+        todoRepository.adjustItemCounters(todoId, 1, 0);
+        reopenForNewItems(todo);
 
-        if (todo.isCompleted()) {
-            todo.setCompleted(false);
-            todo.setCompletedByUser(null);
-            todo.setCompletedAt(null);
-
-            todo.setReviewed(false);
-            todo.setReviewedBy(null);
-            todo.setReviewedAt(null);
+        todoCache.evict(todoId);
+        return publish(TodoChangeEvent.ITEM_ADDED, toDto(saved));
+    }
 
-            if (todo.getDueDate() != null) {
-                todo.setOverdue(todo.getDueDate().isBefore(LocalDate.now()));
-            } else {
-                todo.setOverdue(false);
+    @Override
+    @Transactional
+    public List<TodoItemDto> addItems(Long todoId, List<String> titles) {
+        if (titles == null || titles.isEmpty()) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Item titles cannot be empty.");
+        }
+        if (titles.size() > MAX_BATCH_SIZE) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_BATCH_SIZE + " items can be added per request.");
+        }
+        for (int i = 0; i < titles.size(); i++) {
+            if (titles.get(i) == null || titles.get(i).trim().isEmpty()) {
+                throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Item title #" + i + " cannot be empty.");
             }
+        }
+
+        Todo todo = todoRepository.findById(todoId)
+                .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id: " + todoId));
+        if (todo.isReviewed()) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Reviewed task cannot be modified.");
+        }
 
-            todoRepository.save(todo);
+        List<TodoItem> items = new ArrayList<>(titles.size());
+        for (String title : titles) {
+            TodoItem it = new TodoItem();
+            it.setTodo(todo);
+            it.setTitle(title.trim());
+            items.add(it);
         }
+        // sequence ids let Hibernate send these as JDBC batches at flush
+        List<TodoItem> saved = todoItemRepository.saveAll(items);
+        todoRepository.adjustItemCounters(todoId, saved.size(), 0);
+        reopenForNewItems(todo);
 
-        return toDto(saved);
+        todoCache.evict(todoId);
+        List<TodoItemDto> added = saved.stream().map(this::toDto).collect(Collectors.toList());
+        eventPublisher.publishEvent(new TodoChangeEvent(todoId, TodoChangeEvent.ITEMS_ADDED, added));
+        return added;
+    }
+
+    // a new unchecked item means a completed todo is no longer done
+    private void reopenForNewItems(Todo todo) {
+        if (!todo.isCompleted()) {
+            return;
+        }
+        if (todo.getCompletedByUser() != null) {
+            eventPublisher.publishEvent(new TodoFinisherChangedEvent(todo.getId(),
+                    todo.getCompletedByUser().getId(), dayOf(todo.getCompletedAt()), null, null, null));
+        }
+        todo.setCompleted(false);
+        todo.setCompletedByUser(null);
+        todo.setCompletedAt(null);
+
+        todo.setReviewed(false);
+        todo.setReviewedBy(null);
+        todo.setReviewedAt(null);
+
+        if (todo.getDueDate() != null) {
+            todo.setOverdue(todo.getDueDate().isBefore(LocalDate.now()));
+        } else {
+            todo.setOverdue(false);
+        }
+
+        todoRepository.save(todo);
     }
 
 
     @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED) // see DailyScoreRecorder
     public void deleteItem(Long todoId, Long itemId) {
         todoRepository.findById(todoId)
                 .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id: " + todoId));
@@ -101,9 +174,18 @@ public class TodoItemServiceImpl implements TodoItemService {
             throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Reviewed task cannot be modified.");
         }
         todoItemRepository.delete(it);
+        todoRepository.adjustItemCounters(it.getTodo().getId(), -1, it.isCompleted() ? -1 : 0);
+        todoCache.evict(it.getTodo().getId());
+        if (it.isCompleted() && it.getCompletedBy() != null) {
+            eventPublisher.publishEvent(new ItemCompletionChangedEvent(it.getTodo().getId(),
+                    it.getCompletedBy().getId(), null, dayOf(it.getCompletedAt()), -1));
+        }
+        eventPublisher.publishEvent(new TodoChangeEvent(it.getTodo().getId(), TodoChangeEvent.ITEM_DELETED,
+                Map.of("id", itemId, "todoId", it.getTodo().getId())));
     }
 
     @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED) // see DailyScoreRecorder
     public TodoItemDto completeItem(Long itemId) {
         TodoItem it = todoItemRepository.findById(itemId)
                 .orElseThrow(() -> new ResourceNotFoundException("Item not found with id: " + itemId));
@@ -115,18 +197,76 @@ public class TodoItemServiceImpl implements TodoItemService {
             return toDto(it);
         }
 
-        String username = SecurityUtil.getCurrentUsername();
-        User user = userRepository.findByUsernameOrEmail(username, username)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        UserPrincipal me = currentUserResolver.requireCurrentUser();
+        User user = userRepository.getReferenceById(me.getId());
+
+        LocalDateTime completedAt = LocalDateTime.now();
+        if (todoItemRepository.completeIfOpen(itemId, user, completedAt) == 0) {
+            // someone else ticked it first; same answer as the already-completed branch above
+            return toDto(todoItemRepository.findWithCompleterById(itemId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Item not found with id: " + itemId)));
+        }
+        todoRepository.adjustItemCounters(it.getTodo().getId(), 0, 1);
+        todoCache.evict(it.getTodo().getId());
+        eventPublisher.publishEvent(new ItemCompletionChangedEvent(it.getTodo().getId(),
+                me.getId(), me.getFirstName(), completedAt.toLocalDate(), 1));
 
         it.setCompleted(true);
-        it.setCompletedBy(user);
-        it.setCompletedAt(LocalDateTime.now());
-        TodoItem saved = todoItemRepository.save(it);
-        return toDto(saved);
+        it.setCompletedAt(completedAt);
+        TodoItemDto dto = toDto(it);
+        dto.setCompletedById(me.getId());
+        dto.setCompletedByName(me.getDisplayName());
+        return publish(TodoChangeEvent.ITEM_COMPLETED, dto);
     }
 
     @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED) // see DailyScoreRecorder
+    public List<TodoItemDto> completeItems(Long todoId, List<Long> itemIds) {
+        if (itemIds == null || itemIds.isEmpty()) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Item ids cannot be empty.");
+        }
+        return completeOpen(todoId, itemIds);
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED) // see DailyScoreRecorder
+    public List<TodoItemDto> completeRemainingItems(Long todoId) {
+        return completeOpen(todoId, null);
+    }
+
+    // itemIds null completes every item still open
+    private List<TodoItemDto> completeOpen(Long todoId, List<Long> itemIds) {
+        Todo todo = todoRepository.findById(todoId)
+                .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id: " + todoId));
+        if (todo.isReviewed()) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Reviewed task cannot be modified.");
+        }
+
+        UserPrincipal me = currentUserResolver.requireCurrentUser();
+        User user = userRepository.getReferenceById(me.getId());
+
+        // one UPDATE for the whole set; items that were already completed keep their original completer
+        LocalDateTime completedAt = LocalDateTime.now();
+        int changed = (itemIds == null)
+                ? todoItemRepository.completeAllOpen(todoId, user, completedAt)
+                : todoItemRepository.completeOpenByIds(todoId, itemIds, user, completedAt);
+        if (changed > 0) {
+            todoRepository.adjustItemCounters(todoId, 0, changed);
+            todoCache.evict(todoId);
+            eventPublisher.publishEvent(new ItemCompletionChangedEvent(todoId,
+                    me.getId(), me.getFirstName(), completedAt.toLocalDate(), changed));
+        }
+
+        List<TodoItemDto> items = todoItemRepository.findByTodo_IdOrderByIdAsc(todoId)
+                .stream().map(this::toDto).collect(Collectors.toList());
+        if (changed > 0) {
+            eventPublisher.publishEvent(new TodoChangeEvent(todoId, TodoChangeEvent.ITEMS_COMPLETED, items));
+        }
+        return items;
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED) // see DailyScoreRecorder
     public TodoItemDto uncompleteItem(Long itemId) {
         TodoItem it = todoItemRepository.findById(itemId)
                 .orElseThrow(() -> new ResourceNotFoundException("Item not found with id: " + itemId));
@@ -138,24 +278,40 @@ public class TodoItemServiceImpl implements TodoItemService {
             return toDto(it);
         }
 
-        String username = SecurityUtil.getCurrentUsername();
-        User me = userRepository.findByUsernameOrEmail(username, username)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        boolean isAdmin = me.getRoles().stream().anyMatch(r -> "ROLE_ADMIN".equals(r.getName()));
+        UserPrincipal me = currentUserResolver.requireCurrentUser();
 
-        if (!isAdmin && (it.getCompletedBy() == null ||
+        if (!me.isAdmin() && (it.getCompletedBy() == null ||
                 !Objects.equals(it.getCompletedBy().getId(), me.getId()))) {
             throw new TodoAPIException(HttpStatus.FORBIDDEN, "Only the completer or admin can undo this item.");
         }
 
+        if (todoItemRepository.reopenIfCompleted(itemId) == 0) {
+            return toDto(todoItemRepository.findWithCompleterById(itemId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Item not found with id: " + itemId)));
+        }
+        todoRepository.adjustItemCounters(it.getTodo().getId(), 0, -1);
+        todoCache.evict(it.getTodo().getId());
+        if (it.getCompletedBy() != null) {
+            eventPublisher.publishEvent(new ItemCompletionChangedEvent(it.getTodo().getId(),
+                    it.getCompletedBy().getId(), null, dayOf(it.getCompletedAt()), -1));
+        }
+
         it.setCompleted(false);
         it.setCompletedBy(null);
         it.setCompletedAt(null);
-        TodoItem saved = todoItemRepository.save(it);
-        return toDto(saved);
+        return publish(TodoChangeEvent.ITEM_REOPENED, toDto(it));
     }
 
 
+    private TodoItemDto publish(String type, TodoItemDto dto) {
+        eventPublisher.publishEvent(new TodoChangeEvent(dto.getTodoId(), type, dto));
+        return dto;
+    }
+
+    private static LocalDate dayOf(LocalDateTime time) {
+        return time != null ? time.toLocalDate() : null;
+    }
+
     private TodoItemDto toDto(TodoItem it) {
         Long byId = it.getCompletedBy() != null ? it.getCompletedBy().getId() : null;
         String byName = null;
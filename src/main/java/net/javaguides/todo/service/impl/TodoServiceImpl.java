@@ -1,100 +1,204 @@
 package net.javaguides.todo.service.impl;
 
 import lombok.AllArgsConstructor;
+import net.javaguides.todo.cache.TodoCache;
 import net.javaguides.todo.dto.ParticipantEntryDto;
 import net.javaguides.todo.dto.ParticipationDetailResponse;
 import net.javaguides.todo.dto.TodoDto;
+import net.javaguides.todo.dto.TodoStatsDto;
 import net.javaguides.todo.entity.Todo;
 import net.javaguides.todo.entity.User;
+import net.javaguides.todo.event.CompletedItemCount;
+import net.javaguides.todo.event.TodoChangeEvent;
+import net.javaguides.todo.event.TodoDeletedEvent;
+import net.javaguides.todo.event.TodoFinisherChangedEvent;
 import net.javaguides.todo.exception.ResourceNotFoundException;
 import net.javaguides.todo.exception.TodoAPIException;
 import net.javaguides.todo.repository.TodoItemRepository;
 import net.javaguides.todo.repository.TodoRepository;
 import net.javaguides.todo.repository.UserRepository;
+import net.javaguides.todo.security.CurrentUserResolver;
+import net.javaguides.todo.security.UserPrincipal;
 import net.javaguides.todo.service.TodoService;
-import net.javaguides.todo.utils.SecurityUtil;
 import org.modelmapper.ModelMapper;
+import org.springframework.data.domain.Limit;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor // take care of creating the parameterized constructor
 public class TodoServiceImpl implements TodoService {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final String ITEMS_OPEN = "All items must be completed before this task can be marked as completed.";
+
     private final TodoRepository todoRepository;
     private final ModelMapper modelMapper;
     private final UserRepository userRepository;
     private final TodoItemRepository todoItemRepository;
+    private final TodoCache todoCache;
+    private final CurrentUserResolver currentUserResolver;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public TodoDto addTodo(TodoDto todoDto) {
 
         Todo todo = modelMapper.map(todoDto, Todo.class); // single line convert TodoDto into Todo JPA entity
-
-        todo.setCreatedDate(LocalDate.now());
-        if (todo.getDueDate() != null && todo.getDueDate().isBefore(LocalDate.now())) {
-            todo.setOverdue(true);
-        }
+        prepareNewTodo(todo, LocalDate.now());
 
         // Todo JPA entity
         Todo savedTodo = todoRepository.save(todo);
-        return toDto(savedTodo);
+        return publish(TodoChangeEvent.TODO_CREATED, toDto(savedTodo));
+    }
+
+    @Override
+    @Transactional
+    public List<TodoDto> addTodos(List<TodoDto> todoDtos) {
+        if (todoDtos == null || todoDtos.isEmpty()) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Todo list cannot be empty.");
+        }
+        if (todoDtos.size() > MAX_BATCH_SIZE) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_BATCH_SIZE + " todos can be created per request.");
+        }
+
+        // validate the whole list first so a bad row rejects the batch before anything is inserted
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < todoDtos.size(); i++) {
+            TodoDto dto = todoDtos.get(i);
+            if (dto == null) {
+                errors.add("#" + i + ": missing");
+                continue;
+            }
+            if (dto.getTitle() == null || dto.getTitle().isBlank()) {
+                errors.add("#" + i + ": title is required");
+            }
+            if (dto.getDescription() == null || dto.getDescription().isBlank()) {
+                errors.add("#" + i + ": description is required");
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Invalid todos: " + String.join("; ", errors));
+        }
+
+        LocalDate today = LocalDate.now();
+        List<Todo> todos = new ArrayList<>(todoDtos.size());
+        for (TodoDto dto : todoDtos) {
+            Todo todo = new Todo();
+            todo.setTitle(dto.getTitle());
+            todo.setDescription(dto.getDescription());
+            todo.setDueDate(dto.getDueDate());
+            prepareNewTodo(todo, today);
+            todos.add(todo);
+        }
+
+        // pooled sequence ids + hibernate.jdbc.batch_size turn this into a few multi-row round trips at flush
+        List<Todo> saved = todoRepository.saveAll(todos);
+        List<TodoDto> result = new ArrayList<>(saved.size());
+        for (Todo t : saved) {
+            result.add(toDto(t));
+        }
+        eventPublisher.publishEvent(new TodoChangeEvent(null, TodoChangeEvent.TODOS_CREATED, result));
+        return result;
+    }
+
+    private static void prepareNewTodo(Todo todo, LocalDate today) {
+        todo.setCreatedDate(today);
+        todo.setItemsTotal(0);
+        todo.setItemsCompleted(0);
+        if (todo.getDueDate() != null && todo.getDueDate().isBefore(today)) {
+            todo.setOverdue(true);
+        }
     }
 
     @Override
     public TodoDto getTodo(Long id) {
-        Todo todo = todoRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id" + id));
-        return toDto(todo);
+        return todoCache.getTodo(id);
     }
 
     @Override
     public List<TodoDto> getAllTodos() {
-        List<Todo> todos = todoRepository.findAll();
-        return todos.stream().map(this::toDto).collect(Collectors.toList());
+        return todoRepository.findAllDtos();
     }
 
     @Override
+    public List<TodoDto> getTodosAfter(Long afterId, Integer limit) {
+        int size = (limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        long after = (afterId == null) ? 0L : afterId;
+        return todoRepository.findDtosAfter(after, Limit.of(size));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllTodos(Consumer<TodoDto> sink) {
+        // DTO projection rows are never managed, so the persistence context stays empty however long the stream is
+        try (Stream<TodoDto> todos = todoRepository.streamAllDtos()) {
+            todos.forEach(sink);
+        }
+    }
+
+    @Override
+    @Transactional
     public TodoDto updateTodo(TodoDto todoDto, Long id) {
         Todo todo = todoRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id: " + id));
         todo.setTitle(todoDto.getTitle());
         todo.setDescription(todoDto.getDescription());
         todo.setDueDate(todoDto.getDueDate());
+        Long previousFinisher = finisherIdOf(todo);
+        LocalDate finishedOn = dayOf(todo.getCompletedAt());
         todo.setCompleted(todoDto.isCompleted());
 
         if (todo.isReviewed()) {
             throw new TodoAPIException(HttpStatus.BAD_REQUEST, "Reviewed task cannot be edited.");
         }
 
-        if (todo.getDueDate() != null && todo.getDueDate().isBefore(LocalDate.now())) {
-            todo.setOverdue(true);
-        }
-
-        if (todo.isOverdue() && todo.getDueDate() != null && todo.getDueDate().isAfter(LocalDate.now())) {
-            todo.setOverdue(false);
-        }
+        // the due date may have moved or been cleared: same rule as the sweeper for open todos,
+        // and "finished after the due date" for completed ones
+        LocalDate dueDate = todo.getDueDate();
+        LocalDate finished = todo.isCompleted() ? dayOf(todo.getCompletedAt()) : LocalDate.now();
+        todo.setOverdue(dueDate != null && finished != null && dueDate.isBefore(finished));
 
         Todo updated = todoRepository.save(todo);
-        return toDto(updated);
+        todoCache.evict(id);
+        Long finisher = finisherIdOf(updated);
+        if (!Objects.equals(previousFinisher, finisher)) {
+            eventPublisher.publishEvent(new TodoFinisherChangedEvent(id, previousFinisher, finishedOn, finisher,
+                    finisher != null ? updated.getCompletedByUser().getFirstName() : null, finishedOn));
+        }
+        return publish(TodoChangeEvent.TODO_UPDATED, toDto(updated));
     }
 
     @Override
+    @Transactional
     public void deleteTodo(Long id) {
         Todo todo = todoRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id:" + id));
+        Long finisher = finisherIdOf(todo);
+        // read before the delete: the leaderboard buckets take these back out
+        List<CompletedItemCount> completedItems = todoItemRepository.completedItemsByUserAndDay(id).stream()
+                .map(r -> new CompletedItemCount((Long) r[0], (LocalDate) r[1], ((Number) r[2]).longValue()))
+                .toList();
         todoRepository.delete(todo);
+        todoCache.evict(id);
+        eventPublisher.publishEvent(new TodoDeletedEvent(id, finisher, dayOf(todo.getCompletedAt()), completedItems));
+        eventPublisher.publishEvent(new TodoChangeEvent(id, TodoChangeEvent.TODO_DELETED, Map.of("id", id)));
     }
 
     @Override
+    @Transactional
     public TodoDto completeTodo(Long id) {
         Todo todo = todoRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id : " + id));
@@ -102,47 +206,70 @@ public class TodoServiceImpl implements TodoService {
             throw new TodoAPIException(HttpStatus.BAD_REQUEST,
                     "This task has already been reviewed and cannot be marked as completed.");
         }
-        String username = SecurityUtil.getCurrentUsername();
-        User user = userRepository.findByUsernameOrEmail(username, username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        UserPrincipal me = currentUserResolver.requireCurrentUser();
 
         if (todo.isCompleted()) {
-            if (todo.getCompletedByUser() != null && !todo.getCompletedByUser().getId().equals(user.getId())) {
-                throw new TodoAPIException(HttpStatus.CONFLICT,
-                        "This task is already completed by " + todo.getCompletedByUser().getFirstName());
-            }
-            return toDto(todo);
+            return alreadyCompleted(toDto(todo), me);
         }
 
-        long itemsTotal = todoItemRepository.countByTodo_Id(id);
-        if (itemsTotal > 0) {
-            boolean hasIncomplete = todoItemRepository.existsByTodo_IdAndCompletedFalse(id);
+        if (todo.getItemsTotal() > 0) {
+            boolean hasIncomplete = todo.getItemsCompleted() < todo.getItemsTotal();
             if (hasIncomplete) {
-                throw new TodoAPIException(HttpStatus.CONFLICT,
-                        "All items must be completed before this task can be marked as completed.");
+                throw new TodoAPIException(HttpStatus.CONFLICT, ITEMS_OPEN);
             }
-            boolean isParticipant = todoItemRepository.isParticipant(id, user.getUsername());
+            boolean isParticipant = todoItemRepository.isParticipant(id, me.getUsername());
             if (!isParticipant) {
                 throw new TodoAPIException(HttpStatus.FORBIDDEN,
                         "Only participants who completed at least one item can complete this task.");
             }
         }
 
+        LocalDate today = LocalDate.now();
+        LocalDateTime completedAt = LocalDateTime.now();
+        // FK only: a reference is enough, no users SELECT
+        User user = userRepository.getReferenceById(me.getId());
+        if (todoRepository.completeIfOpen(id, user, completedAt, today) == 0) {
+            // another finisher got in between our read and the update, or an item was added or reopened
+            TodoDto current = todoRepository.findDtoById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id : " + id));
+            if (!current.isCompleted()) {
+                if (current.getItemsCompleted() < current.getItemsTotal()) {
+                    throw new TodoAPIException(HttpStatus.CONFLICT, ITEMS_OPEN);
+                }
+                throw new TodoAPIException(HttpStatus.CONFLICT, "This task was changed concurrently, please retry.");
+            }
+            return alreadyCompleted(current, me);
+        }
+        todoCache.evict(id);
+        eventPublisher.publishEvent(new TodoFinisherChangedEvent(id, null, null,
+                me.getId(), me.getFirstName(), completedAt.toLocalDate()));
+
+        // mirror the UPDATE on the detached copy for the response
         todo.setCompleted(Boolean.TRUE);
         todo.setReviewed(Boolean.FALSE);
 
-        if (todo.getDueDate() != null && todo.getDueDate().isBefore(LocalDate.now())) {
+        if (todo.getDueDate() != null && todo.getDueDate().isBefore(today)) {
             todo.setOverdue(true);
         }
 
-        todo.setCompletedByUser(user);
-        todo.setCompletedAt(LocalDateTime.now());
+        todo.setCompletedAt(completedAt);
+        TodoDto dto = toDto(todo);
+        // names come from the principal so the users proxy is never initialized
+        dto.setCompletedById(me.getId());
+        dto.setCompletedByName(me.getFirstName());
+        return publish(TodoChangeEvent.TODO_COMPLETED, dto);
+    }
 
-        Todo updated = todoRepository.save(todo);
-        return toDto(updated);
+    private TodoDto alreadyCompleted(TodoDto todo, UserPrincipal me) {
+        if (todo.getCompletedById() != null && !todo.getCompletedById().equals(me.getId())) {
+            throw new TodoAPIException(HttpStatus.CONFLICT,
+                    "This task is already completed by " + todo.getCompletedByName());
+        }
+        return todo;
     }
 
     @Override
+    @Transactional
     public TodoDto inCompleteTodo(Long id) {
         Todo todo = todoRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id : " + id));
@@ -156,21 +283,30 @@ public class TodoServiceImpl implements TodoService {
             return toDto(todo);
         }
 
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String currentUsername = (auth != null) ? auth.getName() : null;
-        boolean isAdmin = (auth != null) && auth.getAuthorities().stream()
-                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
-
-        User currentUser = userRepository.findByUsernameOrEmail(currentUsername, currentUsername)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        UserPrincipal me = currentUserResolver.requireCurrentUser();
+        boolean isAdmin = me.isAdmin();
 
         boolean isOwner = (todo.getCompletedByUser() != null
-                && todo.getCompletedByUser().getId().equals(currentUser.getId()));
+                && todo.getCompletedByUser().getId().equals(me.getId()));
         if (!isAdmin && !isOwner) {
             throw new TodoAPIException(HttpStatus.FORBIDDEN,
                     "Only the original finisher or an admin can mark this task as incomplete.");
         }
 
+        LocalDate today = LocalDate.now();
+        if (todoRepository.reopenIfCompleted(id, today) == 0) {
+            // someone else reopened (or reviewed) it first; report what is there now
+            TodoDto current = todoRepository.findDtoById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Todo not found with id : " + id));
+            if (current.isCompleted()) {
+                throw new TodoAPIException(HttpStatus.CONFLICT, "This task was changed concurrently, please retry.");
+            }
+            return current;
+        }
+        todoCache.evict(id);
+        eventPublisher.publishEvent(new TodoFinisherChangedEvent(id, finisherIdOf(todo), dayOf(todo.getCompletedAt()),
+                null, null, null));
+
         todo.setCompleted(false);
         todo.setCompletedByUser(null);
         todo.setCompletedAt(null);
@@ -179,13 +315,11 @@ public class TodoServiceImpl implements TodoService {
         todo.setReviewedAt(null);
 
         if (todo.getDueDate() != null) {
-            todo.setOverdue(todo.getDueDate().isBefore(LocalDate.now()));
+            todo.setOverdue(todo.getDueDate().isBefore(today));
         } else {
             todo.setOverdue(false);
         }
-
-        Todo updated = todoRepository.save(todo);
-        return toDto(updated);
+        return publish(TodoChangeEvent.TODO_REOPENED, toDto(todo));
     }
 
     @Override
@@ -198,68 +332,47 @@ public class TodoServiceImpl implements TodoService {
         }
         todo.setReviewed(Boolean.TRUE);
 
-        String username = SecurityUtil.getCurrentUsername();
-        User user = userRepository.findByUsernameOrEmail(username, username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-        todo.setReviewedBy(user.getFirstName());
+        UserPrincipal me = currentUserResolver.requireCurrentUser();
+        todo.setReviewedBy(me.getFirstName());
         todo.setReviewedAt(LocalDateTime.now());
 
         Todo updatedTodo = todoRepository.save(todo);
-        return toDto(updatedTodo);
+        todoCache.evict(id);
+        return publish(TodoChangeEvent.TODO_REVIEWED, toDto(updatedTodo));
     }
 
     @Override
     public List<TodoDto> getPendingReviewTodos() {
-        List<Todo> todos = todoRepository.findByCompletedTrueAndReviewedFalse();
-        return todos.stream().map(this::toDto).collect(Collectors.toList());
+        return todoRepository.findPendingReviewDtos();
     }
 
     @Override
     public List<TodoDto> getReviewedTodos() {
-        List<Todo> todos = todoRepository.findByCompletedTrueAndReviewedTrue();
-        return todos.stream().map(this::toDto).collect(Collectors.toList());
+        return todoRepository.findReviewedDtos();
     }
 
     @Override
     public Map<String, Long> getTodoStatistics() {
-        List<Todo> todos = todoRepository.findAll();
-        LocalDate today = LocalDate.now();
-
-        long total = todos.size();
-        long completed = todos.stream().filter(Todo::isCompleted).count();
-        long pendingReview = todos.stream().filter(t -> t.isCompleted() && !t.isReviewed()).count();
-        long reviewed = todos.stream().filter(Todo::isReviewed).count();
-        long overdue = todos.stream()
-                .filter(t -> t.getDueDate() != null)
-                .filter(t -> t.getDueDate().isBefore(today))
-                .filter(t -> !t.isCompleted())
-                .count();
+        TodoStatsDto counts = todoRepository.aggregateStats(LocalDate.now());
 
         Map<String, Long> stats = new HashMap<>();
-        stats.put("total", total);
-        stats.put("completed", completed);
-        stats.put("pendingReview", pendingReview);
-        stats.put("reviewed", reviewed);
-        stats.put("overdue", overdue);
+        stats.put("total", orZero(counts.getTotal()));
+        stats.put("completed", orZero(counts.getCompleted()));
+        stats.put("pendingReview", orZero(counts.getPendingReview()));
+        stats.put("reviewed", orZero(counts.getReviewed()));
+        stats.put("overdue", orZero(counts.getOverdue()));
 
         return stats;
     }
 
     @Override
     public List<TodoDto> getOverdueTodos() {
-        LocalDate today = LocalDate.now();
-        List<Todo> overdueTodos = todoRepository.findByDueDateBefore(today);
-
-        List<Todo> filtered = overdueTodos.stream()
-                .filter(todo -> !todo.isCompleted())
-                .collect(Collectors.toList());
-
-        return filtered.stream().map(this::toDto).collect(Collectors.toList());
+        return todoRepository.findOverdueDtos();
     }
 
     @Override
     public Map<String, Long> getParticipationStats(Long todoId) {
-        List<Object[]> rows = todoItemRepository.countCompletedItemsByUser(todoId);
+        List<Object[]> rows = todoCache.getParticipants(todoId, todoItemRepository::countCompletedItemsByUser);
         Map<String, Long> stats = new HashMap<>();
         for (Object[] row : rows) {
             String username = (String) row[0];
@@ -271,7 +384,7 @@ public class TodoServiceImpl implements TodoService {
 
     @Override
     public ParticipationDetailResponse getParticipationDetail(Long todoId) {
-        List<Object[]> rows = todoItemRepository.countCompletedItemsByUser(todoId);
+        List<Object[]> rows = todoCache.getParticipants(todoId, todoItemRepository::countCompletedItemsByUser);
 
         long total = 0L;
         for (Object[] r : rows) {
@@ -282,8 +395,9 @@ public class TodoServiceImpl implements TodoService {
 
         Authentication a = SecurityContextHolder.getContext().getAuthentication();
         String currentUsername = (a != null) ? a.getName() : null;
+        // same answer as todoItemRepository.isParticipant, read off the cached per-user counts
         boolean currentIsParticipant = (currentUsername != null)
-                && todoItemRepository.isParticipant(todoId, currentUsername);
+                && rows.stream().anyMatch(r -> currentUsername.equals(r[0]));
 
         List<ParticipantEntryDto> participants = new ArrayList<>();
         for (Object[] r : rows) {
@@ -303,6 +417,23 @@ public class TodoServiceImpl implements TodoService {
         return res;
     }
 
+    private static long orZero(Long value) {
+        return value == null ? 0L : value;
+    }
+
+    private TodoDto publish(String type, TodoDto dto) {
+        eventPublisher.publishEvent(new TodoChangeEvent(dto.getId(), type, dto));
+        return dto;
+    }
+
+    private static Long finisherIdOf(Todo t) {
+        return (t.isCompleted() && t.getCompletedByUser() != null) ? t.getCompletedByUser().getId() : null;
+    }
+
+    private static LocalDate dayOf(LocalDateTime time) {
+        return time != null ? time.toLocalDate() : null;
+    }
+
     private TodoDto toDto(Todo t) {
         TodoDto dto = new TodoDto();
         dto.setId(t.getId());
@@ -316,6 +447,8 @@ public class TodoServiceImpl implements TodoService {
         dto.setReviewedBy(t.getReviewedBy());
         dto.setReviewedAt(t.getReviewedAt());
         dto.setOverdue(t.isOverdue());
+        dto.setItemsTotal(t.getItemsTotal());
+        dto.setItemsCompleted(t.getItemsCompleted());
 
         if (t.getCompletedByUser() != null) {
             dto.setCompletedById(t.getCompletedByUser().getId());
@@ -0,0 +1,204 @@
+package net.javaguides.todo.writebehind;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.javaguides.todo.entity.Message;
+import net.javaguides.todo.entity.Todo;
+import net.javaguides.todo.entity.User;
+import net.javaguides.todo.exception.TodoAPIException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Optional write-behind for chat messages (app.messages.write-behind.enabled). Accepted messages wait
+// in a bounded queue; one writer thread drains it every few milliseconds and inserts the batch as one JDBC
+// batch in a single transaction (rewriteBatchedStatements=true turns it into multi-row INSERTs on MySQL).
+// The IDENTITY keys come back in row order. Each submit gets a future that completes once its batch has
+// committed, so callers can acknowledge durably.
+// A full queue is rejected straight away (503) instead of letting callers pile up on the pool.
+@Slf4j
+@Component
+public class MessageWriteBehind {
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final BlockingQueue<Pending> queue;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter rejected;
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public MessageWriteBehind(@Value("${app.messages.write-behind.enabled:false}") boolean enabled,
+                              @Value("${app.messages.write-behind.queue-capacity:10000}") int queueCapacity,
+                              @Value("${app.messages.write-behind.batch-size:500}") int batchSize,
+                              @Value("${app.messages.write-behind.flush-interval-ms:5}") long flushIntervalMillis,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rejected = Counter.builder("messages.write_behind.rejected")
+                .description("Messages refused because the write-behind queue was full")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("messages.write_behind.flush")
+                .description("Time to insert and commit one write-behind batch")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("messages.write_behind.batch.size")
+                .register(meterRegistry);
+        meterRegistry.gauge("messages.write_behind.queue.depth", queue, BlockingQueue::size);
+
+        if (enabled) {
+            writer = new Thread(this::run, "message-write-behind");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // completes with the saved message (id and createdAt set) once its batch has committed
+    public CompletableFuture<Message> submit(Long todoId, Long userId, String content) {
+        Pending pending = new Pending(todoId, userId, content, LocalDateTime.now(), new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            rejected.increment();
+            throw new TodoAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Too many messages right now, please retry.");
+        }
+        return pending.persisted();
+    }
+
+    // stop accepting, then write whatever is still queued
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                // give a burst a few milliseconds to accumulate unless a full batch is already waiting
+                if (running && flushIntervalMillis > 0 && queue.size() < batchSize - 1) {
+                    Thread.sleep(flushIntervalMillis);
+                }
+                List<Pending> batch = new ArrayList<>(Math.min(batchSize, queue.size() + 1));
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                log.error("Message write-behind loop failed", e);
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        batchSizes.record(batch.size());
+        Timer.Sample sample = Timer.start();
+        try {
+            write(batch);
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).persisted().completeExceptionally(e);
+            } else {
+                // one bad row (say, its todo was deleted meanwhile) must not fail the others
+                log.warn("Write-behind batch of {} failed, retrying one by one: {}", batch.size(), e.getMessage());
+                for (Pending p : batch) {
+                    try {
+                        write(List.of(p));
+                    } catch (RuntimeException rowFailure) {
+                        p.persisted().completeExceptionally(rowFailure);
+                    }
+                }
+            }
+        } finally {
+            sample.stop(flushTimer);
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<Message> saved = transactionTemplate.execute(status -> insert(batch));
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).persisted().complete(saved.get(i));
+        }
+    }
+
+    private List<Message> insert(List<Pending> batch) {
+        return jdbcTemplate.execute((ConnectionCallback<List<Message>>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(
+                    "INSERT INTO messages (content, created_at, todo_id, user_id) VALUES (?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                for (Pending p : batch) {
+                    ps.setString(1, p.content());
+                    ps.setTimestamp(2, Timestamp.valueOf(p.createdAt()));
+                    ps.setLong(3, p.todoId());
+                    ps.setLong(4, p.userId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Message> saved = new ArrayList<>(batch.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (Pending p : batch) {
+                        if (!keys.next()) {
+                            throw new IllegalStateException("Missing generated key for a write-behind message");
+                        }
+                        saved.add(toMessage(keys.getLong(1), p));
+                    }
+                }
+                return saved;
+            }
+        });
+    }
+
+    private static Message toMessage(Long id, Pending p) {
+        Todo todo = new Todo();
+        todo.setId(p.todoId());
+        User user = new User();
+        user.setId(p.userId());
+        return new Message(id, p.content(), p.createdAt(), todo, user);
+    }
+
+    private record Pending(Long todoId, Long userId, String content, LocalDateTime createdAt,
+                           CompletableFuture<Message> persisted) {
+    }
+}
@@ -0,0 +1,39 @@
+package net.javaguides.todo.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.threads.virtual.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:todo_virtual;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+class TaskExecutionConfigTest {
+
+    @Autowired
+    @Qualifier("taskScheduler")
+    private TaskScheduler taskScheduler;
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private AsyncTaskExecutor applicationTaskExecutor;
+
+    @Test
+    void scheduledAndAsyncWorkRunOnVirtualThreads() throws Exception {
+        CompletableFuture<Boolean> scheduled = new CompletableFuture<>();
+        taskScheduler.schedule(() -> scheduled.complete(Thread.currentThread().isVirtual()), Instant.now());
+        assertTrue(scheduled.get(5, TimeUnit.SECONDS));
+
+        assertTrue(applicationTaskExecutor.submit(() -> Thread.currentThread().isVirtual()).get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,243 @@
+package net.javaguides.todo.leaderboard;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import net.javaguides.todo.dto.CollabRowDto;
+import net.javaguides.todo.dto.FinisherRowWithIdDto;
+import net.javaguides.todo.dto.TodoDto;
+import net.javaguides.todo.dto.TodoItemDto;
+import net.javaguides.todo.entity.Todo;
+import net.javaguides.todo.entity.User;
+import net.javaguides.todo.repository.DailyScoreRepository;
+import net.javaguides.todo.repository.TodoItemRepository;
+import net.javaguides.todo.repository.TodoRepository;
+import net.javaguides.todo.repository.UserRepository;
+import net.javaguides.todo.service.TodoItemService;
+import net.javaguides.todo.service.TodoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class LeaderboardEngineTest {
+
+    @Autowired
+    private LeaderboardEngine leaderboardEngine;
+    @Autowired
+    private TodoService todoService;
+    @Autowired
+    private TodoItemService todoItemService;
+    @Autowired
+    private TodoRepository todoRepository;
+    @Autowired
+    private TodoItemRepository todoItemRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private DailyScoreRepository dailyScoreRepository;
+    @Autowired
+    private DailyScoreRecorder dailyScoreRecorder;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private User a;
+    private User b;
+    private User c;
+
+    @BeforeEach
+    void setUp() {
+        todoItemRepository.deleteAll();
+        todoRepository.deleteAll();
+        dailyScoreRepository.deleteAll();
+        leaderboardEngine.reload();
+
+        a = newUser("A");
+        b = newUser("B");
+        c = newUser("C");
+    }
+
+    @Test
+    void incrementalUpdatesMatchAFreshReload() {
+        TodoDto shared = todoService.addTodo(newTodo("shared"));
+        List<TodoItemDto> sharedItems = todoItemService.addItems(shared.getId(), List.of("s1", "s2", "s3"));
+        TodoDto solo = todoService.addTodo(newTodo("solo"));
+        todoItemService.addItems(solo.getId(), List.of("o1", "o2"));
+        TodoDto single = todoService.addTodo(newTodo("single"));
+        List<TodoItemDto> singleItems = todoItemService.addItems(single.getId(), List.of("x1"));
+
+        as(a, () -> todoItemService.completeItem(sharedItems.get(0).getId()));
+        as(b, () -> todoItemService.completeItem(sharedItems.get(1).getId()));
+        as(a, () -> todoItemService.completeItem(sharedItems.get(2).getId()));
+        assertEquals(2, leaderboardEngine.collabScore(a.getId()));
+        assertEquals(1, leaderboardEngine.collabScore(b.getId()));
+
+        // dropping back to one completer takes the todo off the collab board entirely
+        as(b, () -> todoItemService.uncompleteItem(sharedItems.get(1).getId()));
+        assertEquals(0, leaderboardEngine.collabScore(a.getId()));
+        as(c, () -> todoItemService.completeItem(sharedItems.get(1).getId()));
+
+        as(c, () -> todoItemService.completeRemainingItems(solo.getId()));
+        as(c, () -> todoService.completeTodo(solo.getId()));
+        as(a, () -> todoItemService.completeItem(singleItems.get(0).getId()));
+        as(a, () -> todoService.completeTodo(single.getId()));
+        as(c, () -> todoService.completeTodo(shared.getId()));
+        assertEquals(2, leaderboardEngine.finisherScore(c.getId()));
+
+        as(c, () -> { todoService.deleteTodo(solo.getId()); return null; });
+
+        assertEquals(2, leaderboardEngine.collabScore(a.getId()));
+        assertEquals(1, leaderboardEngine.collabScore(c.getId()));
+        assertEquals(0, leaderboardEngine.collabScore(b.getId()));
+        assertEquals(1, leaderboardEngine.collabRank(a.getId()));
+        assertEquals(2, leaderboardEngine.collabRank(c.getId()));
+        assertNull(leaderboardEngine.collabRank(b.getId()));
+        assertEquals(1, leaderboardEngine.finisherRank(a.getId()));
+        assertEquals(1, leaderboardEngine.finisherRank(c.getId()));
+        assertEquals(List.of(shared.getId()), leaderboardEngine.collabTodoIds(c.getId()));
+        // the detail query's EXISTS agrees with the engine on which todos count
+        for (User u : List.of(a, b, c)) {
+            List<Long> detailTodos = todoItemRepository.collabDetailsPage(u.getId(), LocalDateTime.now().minusDays(1),
+                            LocalDateTime.now().plusDays(1), Long.MAX_VALUE, Limit.unlimited()).stream()
+                    .map(r -> (Long) r[0]).distinct().toList();
+            assertEquals(leaderboardEngine.collabTodoIds(u.getId()), detailTodos);
+        }
+
+        List<String> finishers = finisherRows();
+        List<String> collaborators = collabRows();
+        leaderboardEngine.reload();
+        assertEquals(finishers, finisherRows());
+        assertEquals(collaborators, collabRows());
+
+        // everything happened today, so today's buckets must rank exactly like the all-time engine
+        LocalDate today = LocalDate.now();
+        assertEquals(finishers, bucketRows(dailyScoreRepository.finisherBoard(today, today, Limit.unlimited())));
+        assertEquals(collaborators, bucketRows(dailyScoreRepository.collabBoard(today, today, Limit.unlimited())));
+        assertEquals(List.of(), dailyScoreRepository.finisherBoard(today.minusDays(7), today.minusDays(1), Limit.unlimited()));
+
+        dailyScoreRepository.deleteAll();
+        dailyScoreRecorder.backfillIfEmpty();
+        assertEquals(finishers, bucketRows(dailyScoreRepository.finisherBoard(today, today, Limit.unlimited())));
+        assertEquals(collaborators, bucketRows(dailyScoreRepository.collabBoard(today, today, Limit.unlimited())));
+    }
+
+    @Test
+    void finisherDetailPagesWalkEveryRowOnceNewestFirst() {
+        LocalDateTime base = LocalDateTime.now().minusDays(1).withNano(0);
+        List<Todo> finished = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Todo t = new Todo();
+            t.setTitle("f" + i);
+            t.setDescription("f" + i);
+            t.setCreatedDate(LocalDate.now());
+            t.setCompleted(true);
+            t.setCompletedByUser(a);
+            // pairs share a timestamp so the id tie-breaker is exercised
+            t.setCompletedAt(base.plusMinutes(i / 2));
+            finished.add(t);
+        }
+        todoRepository.saveAll(finished);
+
+        List<Long> seen = new ArrayList<>();
+        LocalDateTime beforeAt = LocalDate.now().plusDays(1).atStartOfDay();
+        long beforeId = 0L;
+        while (true) {
+            List<Object[]> page = todoRepository.finisherDetailsPage(a.getId(), LocalDate.EPOCH.atStartOfDay(),
+                    beforeAt, beforeId, Limit.of(3));
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(r -> seen.add((Long) r[0]));
+            Object[] last = page.get(page.size() - 1);
+            beforeAt = (LocalDateTime) last[2];
+            beforeId = (Long) last[0];
+        }
+
+        List<Long> expected = finished.stream()
+                .sorted(Comparator.comparing(Todo::getCompletedAt).thenComparing(Todo::getId).reversed())
+                .map(Todo::getId)
+                .toList();
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void rankCountsOnlyStrictlyHigherScores() {
+        RankedScores scores = new RankedScores();
+        scores.add(1, 5);
+        scores.add(2, 5);
+        scores.add(3, 2);
+        scores.add(4, 500);
+        assertEquals(1, scores.rank(4));
+        assertEquals(2, scores.rank(1));
+        assertEquals(2, scores.rank(2));
+        assertEquals(4, scores.rank(3));
+
+        scores.add(4, -500);
+        assertNull(scores.rank(4));
+        assertEquals(1, scores.rank(1));
+        assertEquals(List.of(1L, 2L), scores.top(2).stream().map(RankedScores.Entry::userId).toList());
+    }
+
+    private List<String> finisherRows() {
+        return leaderboardEngine.topFinishers(Integer.MAX_VALUE).stream()
+                .map((FinisherRowWithIdDto r) -> r.getUserId() + ":" + r.getUserName() + ":" + r.getFinishCount())
+                .toList();
+    }
+
+    private static List<String> bucketRows(List<Object[]> rows) {
+        return rows.stream().map(r -> r[0] + ":" + r[1] + ":" + r[2]).toList();
+    }
+
+    private List<String> collabRows() {
+        return leaderboardEngine.topCollaborators(Integer.MAX_VALUE).stream()
+                .map((CollabRowDto r) -> r.getUserId() + ":" + r.getUserName() + ":" + r.getCollabCount())
+                .toList();
+    }
+
+    // authenticated caller plus an open-in-view EntityManager, as in a real request
+    private <T> T as(User user, Supplier<T> call) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                user.getUsername(), null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+        EntityManager em = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(em));
+        try {
+            return call.get();
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            em.close();
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private User newUser(String firstName) {
+        String name = "lb" + firstName + "_" + System.nanoTime();
+        return userRepository.save(new User(null, firstName, "Last", name, name + "@example.com", "x", new HashSet<>()));
+    }
+
+    private static TodoDto newTodo(String title) {
+        TodoDto dto = new TodoDto();
+        dto.setTitle(title);
+        dto.setDescription(title);
+        dto.setDueDate(LocalDate.now().plusDays(1));
+        return dto;
+    }
+}
@@ -0,0 +1,138 @@
+package net.javaguides.todo.push;
+
+import net.javaguides.todo.entity.Todo;
+import net.javaguides.todo.entity.User;
+import net.javaguides.todo.repository.RoleRepository;
+import net.javaguides.todo.repository.TodoRepository;
+import net.javaguides.todo.repository.UserRepository;
+import net.javaguides.todo.security.JwtTokenProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// own database: the servlet-container context is cached next to the mock ones and would otherwise re-create their tables
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:mem:todo_ws;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+class ChatRelayTest {
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RoleRepository roleRepository;
+    @Autowired
+    private TodoRepository todoRepository;
+    @Autowired
+    private UserDetailsService userDetailsService;
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+    @Autowired
+    private SimpUserRegistry simpUserRegistry;
+
+    private WebSocketStompClient stompClient;
+    private String token;
+    private Long todoId;
+
+    @BeforeEach
+    void setUp() {
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+
+        String name = "ws_" + System.nanoTime();
+        User user = new User(null, "Web", "Socket", name, name + "@example.com", "x", new HashSet<>());
+        user = userRepository.save(user);
+        user.getRoles().add(roleRepository.findByName("ROLE_USER"));
+        userRepository.save(user);
+        UserDetails principal = userDetailsService.loadUserByUsername(name);
+        token = jwtTokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+
+        Todo todo = new Todo();
+        todo.setTitle("chat");
+        todo.setDescription("chat");
+        todo.setCreatedDate(LocalDate.now());
+        todoId = todoRepository.save(todo).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stompClient.stop();
+    }
+
+    @Test
+    void sentMessageIsPersistedAndBroadcast() throws Exception {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + token);
+        StompSession session = stompClient.connectAsync(url(), new WebSocketHttpHeaders(), connectHeaders,
+                new StompSessionHandlerAdapter() {
+                }).get(5, TimeUnit.SECONDS);
+
+        BlockingQueue<Map<?, ?>> received = new LinkedBlockingQueue<>();
+        String topic = "/topic/todos/" + todoId + "/messages";
+        session.subscribe(topic, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((Map<?, ?>) payload);
+            }
+        });
+        // inbound frames are handled on a pool, so wait for the subscription before sending
+        long deadline = System.currentTimeMillis() + 5000;
+        while (simpUserRegistry.findSubscriptions(sub -> topic.equals(sub.getDestination())).isEmpty()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        session.send("/app/todos/" + todoId + "/messages", Map.of("content", "hello"));
+
+        Map<?, ?> message = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(message);
+        assertEquals("hello", message.get("content"));
+        assertEquals(todoId, ((Number) message.get("todoId")).longValue());
+    }
+
+    @Test
+    void connectWithoutTokenIsRejected() {
+        assertThrows(ExecutionException.class, () -> stompClient.connectAsync(url(), new StompSessionHandlerAdapter() {
+        }).get(5, TimeUnit.SECONDS));
+    }
+
+    private String url() {
+        return "ws://localhost:" + port + "/ws";
+    }
+}
@@ -0,0 +1,64 @@
+package net.javaguides.todo.push;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.todo.event.TodoChangeEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TodoEventHubTest {
+
+    @Test
+    void publishingDoesNotWaitForAStalledClient() throws Exception {
+        TodoEventHub hub = new TodoEventHub(2, 60_000, 10, 1, new SimpleMeterRegistry());
+        StalledEmitter emitter = new StalledEmitter();
+        try {
+            hub.subscribe(7L, emitter);
+            // the sender is now stuck writing "connected", holding the emitter's monitor
+            assertTrue(emitter.sending.await(5, TimeUnit.SECONDS));
+
+            // overflows the buffer, so the subscriber is dropped on the publishing thread
+            assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+                for (int i = 0; i < 10; i++) {
+                    hub.on(new TodoChangeEvent(7L, TodoChangeEvent.TODO_UPDATED, Map.of("n", i)));
+                }
+            });
+
+            emitter.release.countDown();
+            assertTrue(emitter.completed.await(5, TimeUnit.SECONDS));
+        } finally {
+            emitter.release.countDown();
+            hub.shutdown();
+        }
+    }
+
+    // send blocks while holding the same monitor ResponseBodyEmitter's send and complete synchronize on
+    private static class StalledEmitter extends SseEmitter {
+
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public synchronized void send(SseEventBuilder builder) {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+        }
+    }
+}
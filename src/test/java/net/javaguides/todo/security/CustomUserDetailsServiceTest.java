@@ -0,0 +1,45 @@
+package net.javaguides.todo.security;
+
+import jakarta.persistence.EntityManagerFactory;
+import net.javaguides.todo.entity.User;
+import net.javaguides.todo.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CustomUserDetailsServiceTest {
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void principalIsCachedByUsernameAndEmailUntilTheUserChanges() {
+        String name = "ud_" + System.nanoTime();
+        User user = userRepository.save(new User(null, "Cached", "User", name, name + "@example.com", "x", new HashSet<>()));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        userDetailsService.loadUserByUsername(name);
+        statistics.clear();
+        userDetailsService.loadUserByUsername(name);
+        userDetailsService.loadUserByUsername(name + "@example.com");
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        user.setPassword("changed");
+        userRepository.save(user);
+
+        assertEquals("changed", userDetailsService.loadUserByUsername(name + "@example.com").getPassword());
+    }
+}
@@ -0,0 +1,61 @@
+package net.javaguides.todo.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.todo.exception.TodoAPIException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHashingTest {
+
+    @Test
+    void saturatedPoolRejectsWith503() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slowEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PasswordHashing hashing = new PasswordHashing(slowEncoder, 1, 1, registry);
+        try {
+            CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> hashing.matches("pw", "pw"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> hashing.matches("pw", "other"));
+            while (registry.get("executor.queued").tag("name", "auth.password").gauge().value() < 1) {
+                Thread.sleep(5);
+            }
+
+            TodoAPIException e = assertThrows(TodoAPIException.class, () -> hashing.matches("pw", "pw"));
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+            assertEquals(1.0, registry.get("auth.password.rejected").counter().count());
+
+            release.countDown();
+            assertTrue(running.get(5, TimeUnit.SECONDS));
+            assertEquals(false, queued.get(5, TimeUnit.SECONDS));
+        } finally {
+            hashing.shutdown();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package net.javaguides.todo.security;
+
+import io.jsonwebtoken.JwtException;
+import net.javaguides.todo.dto.JwtAuthResponse;
+import net.javaguides.todo.dto.LoginDto;
+import net.javaguides.todo.dto.RegisterDto;
+import net.javaguides.todo.exception.TodoAPIException;
+import net.javaguides.todo.service.AuthService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RefreshTokenFlowTest {
+
+    @Autowired
+    private AuthService authService;
+    @Autowired
+    private JwtAuthenticator jwtAuthenticator;
+    @Autowired
+    private AccessTokenRevocations accessTokenRevocations;
+
+    @Test
+    void refreshRotatesAndReuseRevokesTheFamily() {
+        JwtAuthResponse login = authService.login(new LoginDto(register(), "password123"));
+        assertNotNull(login.getRefreshToken());
+
+        JwtAuthResponse refreshed = authService.refresh(login.getRefreshToken());
+        assertNotEquals(login.getRefreshToken(), refreshed.getRefreshToken());
+        assertEquals(login.getUserId(), refreshed.getUserId());
+        jwtAuthenticator.authenticate(refreshed.getAccessToken());
+
+        // the used token comes back: it and its successor are both dead now
+        TodoAPIException reuse = assertThrows(TodoAPIException.class, () -> authService.refresh(login.getRefreshToken()));
+        assertEquals(HttpStatus.UNAUTHORIZED, reuse.getStatus());
+        assertThrows(TodoAPIException.class, () -> authService.refresh(refreshed.getRefreshToken()));
+    }
+
+    @Test
+    void logoutRevokesTheAccessTokenWithoutAQueryPerRequest() {
+        JwtAuthResponse login = authService.login(new LoginDto(register(), "password123"));
+        jwtAuthenticator.authenticate(login.getAccessToken());
+
+        authService.logout(login.getRefreshToken(), login.getAccessToken());
+
+        assertThrows(JwtException.class, () -> jwtAuthenticator.authenticate(login.getAccessToken()));
+        assertThrows(TodoAPIException.class, () -> authService.refresh(login.getRefreshToken()));
+        // still revoked once the in-memory filter is rebuilt from the table
+        accessTokenRevocations.rebuild();
+        assertThrows(JwtException.class, () -> jwtAuthenticator.authenticate(login.getAccessToken()));
+    }
+
+    private String register() {
+        String name = "rt" + System.nanoTime();
+        RegisterDto dto = new RegisterDto();
+        dto.setFirstName("Refresh");
+        dto.setLastName("Token");
+        dto.setUsername(name);
+        dto.setEmail(name + "@example.com");
+        dto.setPassword("password123");
+        authService.register(dto);
+        return name;
+    }
+}
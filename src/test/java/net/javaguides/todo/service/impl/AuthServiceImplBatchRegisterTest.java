@@ -0,0 +1,63 @@
+package net.javaguides.todo.service.impl;
+
+import jakarta.persistence.EntityManagerFactory;
+import net.javaguides.todo.dto.BatchRegisterResponse;
+import net.javaguides.todo.dto.LoginDto;
+import net.javaguides.todo.dto.RegisterDto;
+import net.javaguides.todo.entity.User;
+import net.javaguides.todo.repository.UserRepository;
+import net.javaguides.todo.service.AuthService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AuthServiceImplBatchRegisterTest {
+
+    @Autowired
+    private AuthService authService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void batchSkipsBadRowsAndInsertsTheRestInJdbcBatches() {
+        String prefix = "bulk" + System.nanoTime() + "_";
+        userRepository.save(new User(null, "Taken", "User", prefix + "taken", prefix + "taken@example.com", "x", new HashSet<>()));
+
+        List<RegisterDto> batch = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            batch.add(new RegisterDto("First" + i, "Last" + i, prefix + i, prefix + i + "@example.com", "password" + i));
+        }
+        batch.add(new RegisterDto("Dup", "Row", prefix + 0, prefix + "dup@example.com", "password123"));
+        batch.add(new RegisterDto("Taken", "Row", prefix + "taken", prefix + "other@example.com", "password123"));
+        batch.add(new RegisterDto("Bad", "Mail", prefix + "badmail", "not-an-email", "password123"));
+        batch.add(new RegisterDto("Short", "Pw", prefix + "short", prefix + "short@example.com", "short"));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        BatchRegisterResponse response = authService.registerBatch(batch);
+        long statements = statistics.getPrepareStatementCount();
+
+        assertEquals(30, response.getCreated());
+        assertEquals(4, response.getRejected().size(), String.valueOf(response.getRejected()));
+        assertTrue(response.getRejected().get(0).startsWith("row 31 "));
+        // IN query, role lookup, sequence fetch, one user insert batch and one role-link batch
+        assertTrue(statements <= 8, "batch registration ran " + statements + " statements");
+
+        assertNotNull(authService.login(new LoginDto(prefix + 7, "password7")).getAccessToken());
+    }
+}
@@ -0,0 +1,188 @@
+package net.javaguides.todo.service.impl;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import net.javaguides.todo.dto.TodoDto;
+import net.javaguides.todo.dto.TodoItemDto;
+import net.javaguides.todo.entity.Todo;
+import net.javaguides.todo.entity.TodoItem;
+import net.javaguides.todo.entity.User;
+import net.javaguides.todo.exception.TodoAPIException;
+import net.javaguides.todo.repository.TodoItemRepository;
+import net.javaguides.todo.repository.TodoRepository;
+import net.javaguides.todo.repository.UserRepository;
+import net.javaguides.todo.service.TodoItemService;
+import net.javaguides.todo.service.TodoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CompletionConcurrencyTest {
+
+    private static final int COMPLETERS = 200;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private TodoService todoService;
+    @Autowired
+    private TodoItemService todoItemService;
+    @Autowired
+    private TodoRepository todoRepository;
+    @Autowired
+    private TodoItemRepository todoItemRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private List<User> users;
+
+    @BeforeEach
+    void setUp() {
+        todoItemRepository.deleteAll();
+        todoRepository.deleteAll();
+
+        List<User> batch = new ArrayList<>();
+        long run = System.nanoTime();
+        for (int i = 0; i < COMPLETERS; i++) {
+            String name = "cc" + i + "_" + run;
+            batch.add(new User(null, "First" + i, "Last" + i, name, name + "@example.com", "x", new HashSet<>()));
+        }
+        users = userRepository.saveAll(batch);
+    }
+
+    @Test
+    void concurrentTodoCompletionHasExactlyOneWinner() throws Exception {
+        Todo todo = todoRepository.save(newTodo());
+        AtomicInteger conflicts = new AtomicInteger();
+
+        List<Long> winners = race(user -> {
+            try {
+                TodoDto dto = todoService.completeTodo(todo.getId());
+                return dto.getCompletedById().equals(user.getId()) ? user.getId() : null;
+            } catch (TodoAPIException e) {
+                assertEquals(HttpStatus.CONFLICT, e.getStatus());
+                conflicts.incrementAndGet();
+                return null;
+            }
+        });
+
+        assertEquals(1, winners.size());
+        assertEquals(COMPLETERS - 1, conflicts.get());
+        assertEquals(winners.get(0), todoRepository.findDtoById(todo.getId()).orElseThrow().getCompletedById());
+    }
+
+    @Test
+    void concurrentItemCompletionHasExactlyOneWinner() throws Exception {
+        Todo seeded = newTodo();
+        seeded.setItemsTotal(1);
+        Todo todo = todoRepository.save(seeded);
+        TodoItem item = new TodoItem();
+        item.setTodo(todo);
+        item.setTitle("only item");
+        TodoItem saved = todoItemRepository.save(item);
+
+        List<Long> winners = race(user -> {
+            TodoItemDto dto = todoItemService.completeItem(saved.getId());
+            return user.getId().equals(dto.getCompletedById()) ? user.getId() : null;
+        });
+
+        assertEquals(1, winners.size());
+        assertEquals(winners.get(0), todoItemRepository.findWithCompleterById(saved.getId())
+                .orElseThrow().getCompletedBy().getId());
+        assertEquals(1, todoRepository.findDtoById(todo.getId()).orElseThrow().getItemsCompleted());
+    }
+
+    @Test
+    void completeIfOpenRefusesWhileItemsAreOpen() {
+        // the caller's read saw 1/1, then an item was added before its UPDATE ran
+        Todo seeded = newTodo();
+        seeded.setItemsTotal(2);
+        seeded.setItemsCompleted(1);
+        Todo todo = todoRepository.save(seeded);
+
+        assertEquals(0, todoRepository.completeIfOpen(todo.getId(), users.get(0), LocalDateTime.now(), LocalDate.now()));
+        assertFalse(todoRepository.findDtoById(todo.getId()).orElseThrow().isCompleted());
+    }
+
+    private interface Attempt {
+        Long run(User user);
+    }
+
+    // every user fires at once; returns the ids of callers that saw themselves as the completer
+    private List<Long> race(Attempt attempt) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (User user : users) {
+                Callable<Long> task = () -> {
+                    start.await();
+                    return asUser(user, () -> attempt.run(user));
+                };
+                futures.add(pool.submit(task));
+            }
+            start.countDown();
+
+            List<Long> winners = new ArrayList<>();
+            for (Future<Long> f : futures) {
+                Long id = f.get();
+                if (id != null) {
+                    winners.add(id);
+                }
+            }
+            return winners;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // same request shape as production: authenticated caller plus an open-in-view EntityManager
+    private Long asUser(User user, Callable<Long> call) throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                user.getUsername(), null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+        EntityManager em = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(em));
+        try {
+            return call.call();
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            em.close();
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static Todo newTodo() {
+        Todo t = new Todo();
+        t.setTitle("race");
+        t.setDescription("race");
+        t.setCreatedDate(LocalDate.now());
+        t.setDueDate(LocalDate.now().plusDays(1));
+        return t;
+    }
+}
@@ -0,0 +1,99 @@
+package net.javaguides.todo.service.impl;
+
+import jakarta.persistence.EntityManagerFactory;
+import net.javaguides.todo.dto.MessageDto;
+import net.javaguides.todo.entity.Message;
+import net.javaguides.todo.entity.Todo;
+import net.javaguides.todo.entity.User;
+import net.javaguides.todo.repository.MessageRepository;
+import net.javaguides.todo.repository.TodoRepository;
+import net.javaguides.todo.repository.UserRepository;
+import net.javaguides.todo.service.MessageService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class MessageServiceImplQueryCountTest {
+
+    @Autowired
+    private MessageService messageService;
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private TodoRepository todoRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long todoId;
+    private List<User> authors;
+
+    @BeforeEach
+    void setUp() {
+        authors = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String name = "mq" + i + "_" + System.nanoTime();
+            authors.add(userRepository.save(new User(null, "First" + i, "Last" + i, name,
+                    name + "@example.com", "x", new HashSet<>())));
+        }
+        Todo todo = new Todo();
+        todo.setTitle("thread");
+        todo.setDescription("thread");
+        todo.setCreatedDate(LocalDate.now());
+        todoId = todoRepository.save(todo).getId();
+
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Message m = new Message();
+            m.setTodo(todo);
+            m.setUser(authors.get(i % authors.size()));
+            m.setContent("message " + i);
+            messages.add(m);
+        }
+        messageRepository.saveAll(messages);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void threadListingIsOneQuery() {
+        messageService.listMessagesByTodo(todoId); // warms the todo and display-name caches
+
+        statistics.clear();
+        List<MessageDto> thread = messageService.listMessagesByTodo(todoId);
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(500, thread.size());
+        assertEquals("Last0First0", thread.get(0).getAuthorFullName());
+
+        statistics.clear();
+        List<MessageDto> latest = messageService.listMessagesBefore(todoId, null, 50);
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals("message 499", latest.get(latest.size() - 1).getContent());
+    }
+
+    @Test
+    void renamedAuthorIsNotServedFromTheCache() {
+        messageService.listMessagesByTodo(todoId);
+
+        User author = userRepository.findById(authors.get(0).getId()).orElseThrow();
+        author.setFirstName("Renamed");
+        userRepository.save(author);
+
+        assertEquals("Last0Renamed", messageService.listMessagesByTodo(todoId).get(0).getAuthorFullName());
+    }
+}
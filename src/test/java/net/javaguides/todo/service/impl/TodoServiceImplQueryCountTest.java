@@ -0,0 +1,148 @@
+package net.javaguides.todo.service.impl;
+
+import jakarta.persistence.EntityManagerFactory;
+import net.javaguides.todo.dto.TodoDto;
+import net.javaguides.todo.entity.Todo;
+import net.javaguides.todo.entity.User;
+import net.javaguides.todo.repository.TodoItemRepository;
+import net.javaguides.todo.repository.TodoRepository;
+import net.javaguides.todo.repository.UserRepository;
+import net.javaguides.todo.service.TodoService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TodoServiceImplQueryCountTest {
+
+    private static final long MAX_STATEMENTS_PER_LIST = 1;
+
+    @Autowired
+    private TodoService todoService;
+    @Autowired
+    private TodoRepository todoRepository;
+    @Autowired
+    private TodoItemRepository todoItemRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        todoItemRepository.deleteAll();
+        todoRepository.deleteAll();
+
+        List<User> finishers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String name = "qc" + i + "_" + System.nanoTime();
+            finishers.add(userRepository.save(new User(null, "First" + i, "Last" + i, name,
+                    name + "@example.com", "x", new HashSet<>())));
+        }
+
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Todo t = new Todo();
+            t.setTitle("todo " + i);
+            t.setDescription("desc " + i);
+            t.setCreatedDate(LocalDate.now());
+            t.setDueDate(LocalDate.now().minusDays(i % 3));
+            t.setOverdue(i % 3 != 0);
+            if (i % 2 == 0) {
+                t.setCompleted(true);
+                t.setReviewed(i % 4 == 0);
+                t.setCompletedByUser(finishers.get(i % finishers.size()));
+                t.setCompletedAt(LocalDateTime.now());
+            }
+            todos.add(t);
+        }
+        todoRepository.saveAll(todos);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void getAllTodosRunsBoundedStatements() {
+        List<TodoDto> todos = countStatements(todoService::getAllTodos);
+        assertEquals(30, todos.size());
+        assertTrue(todos.stream().filter(TodoDto::isCompleted).allMatch(t -> t.getCompletedByName() != null));
+    }
+
+    @Test
+    void reviewListsRunBoundedStatements() {
+        assertEquals(7, countStatements(todoService::getPendingReviewTodos).size());
+        assertEquals(8, countStatements(todoService::getReviewedTodos).size());
+    }
+
+    @Test
+    void overdueListRunsBoundedStatements() {
+        assertEquals(10, countStatements(todoService::getOverdueTodos).size());
+    }
+
+    @Test
+    void statisticsComeFromOneAggregateStatement() {
+        Map<String, Long> stats = countStatements(todoService::getTodoStatistics);
+        assertEquals(30L, stats.get("total"));
+        assertEquals(15L, stats.get("completed"));
+        assertEquals(7L, stats.get("pendingReview"));
+        assertEquals(8L, stats.get("reviewed"));
+        assertEquals(10L, stats.get("overdue"));
+    }
+
+    @Test
+    void keysetPageRunsBoundedStatements() {
+        List<TodoDto> firstPage = countStatements(() -> todoService.getTodosAfter(null, 10));
+        assertEquals(10, firstPage.size());
+        Long lastId = firstPage.get(firstPage.size() - 1).getId();
+        List<TodoDto> secondPage = countStatements(() -> todoService.getTodosAfter(lastId, 10));
+        assertTrue(secondPage.get(0).getId() > lastId);
+    }
+
+    @Test
+    void batchCreateIsJdbcBatched() {
+        List<TodoDto> batch = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            TodoDto dto = new TodoDto();
+            dto.setTitle("batch " + i);
+            dto.setDescription("batch desc " + i);
+            dto.setDueDate(LocalDate.now().plusDays(1));
+            batch.add(dto);
+        }
+
+        statistics.clear();
+        List<TodoDto> created = todoService.addTodos(batch);
+        long statements = statistics.getPrepareStatementCount();
+
+        assertEquals(120, created.size());
+        assertTrue(created.stream().allMatch(t -> t.getId() != null));
+        // 3 insert batches of 50 plus a few pooled-sequence fetches, never one round trip per row
+        assertTrue(statements <= 10, "batch insert ran " + statements + " statements");
+    }
+
+    private <T> T countStatements(Supplier<T> call) {
+        statistics.clear();
+        T result = call.get();
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= MAX_STATEMENTS_PER_LIST,
+                "expected at most " + MAX_STATEMENTS_PER_LIST + " statements but ran " + statements);
+        return result;
+    }
+}
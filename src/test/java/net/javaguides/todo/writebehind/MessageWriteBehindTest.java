@@ -0,0 +1,101 @@
+package net.javaguides.todo.writebehind;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.javaguides.todo.dto.MessageDto;
+import net.javaguides.todo.entity.Todo;
+import net.javaguides.todo.entity.User;
+import net.javaguides.todo.exception.ResourceNotFoundException;
+import net.javaguides.todo.repository.MessageRepository;
+import net.javaguides.todo.repository.TodoRepository;
+import net.javaguides.todo.repository.UserRepository;
+import net.javaguides.todo.service.MessageService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "app.messages.write-behind.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:todo_write_behind;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+class MessageWriteBehindTest {
+
+    @Autowired
+    private MessageService messageService;
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private TodoRepository todoRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void burstIsAcknowledgedAfterBatchedInserts() throws Exception {
+        String name = "wb_" + System.nanoTime();
+        User user = userRepository.save(new User(null, "Write", "Behind", name, name + "@example.com", "x", new HashSet<>()));
+        Todo todo = new Todo();
+        todo.setTitle("standup");
+        todo.setDescription("standup");
+        todo.setCreatedDate(LocalDate.now());
+        Long todoId = todoRepository.save(todo).getId();
+
+        int messages = 200;
+        Map<Long, String> acked = new HashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<MessageDto>> acks = new ArrayList<>();
+            for (int i = 0; i < messages; i++) {
+                String content = "m" + i;
+                acks.add(pool.submit(() -> as(user, () -> messageService.addMessage(todoId, content))));
+            }
+            for (Future<MessageDto> ack : acks) {
+                MessageDto dto = ack.get();
+                acked.put(dto.getId(), dto.getContent());
+            }
+            assertEquals(messages, acked.size());
+        } finally {
+            pool.shutdown();
+        }
+
+        // every acknowledged id is the row holding that message, so the batch's generated keys were read back in order
+        Map<Long, String> stored = messageRepository.findByTodo_IdOrderByCreatedAtAsc(todoId).stream()
+                .collect(Collectors.toMap(m -> m.getId(), m -> m.getContent()));
+        assertEquals(acked, stored);
+        // the writer flushed more than one message per transaction
+        assertTrue(meterRegistry.get("messages.write_behind.batch.size").summary().count() < messages);
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> as(user, () -> messageService.addMessage(Long.MAX_VALUE, "lost")));
+    }
+
+    private static <T> T as(User user, java.util.function.Supplier<T> call) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                user.getUsername(), null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+        try {
+            return call.get();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}